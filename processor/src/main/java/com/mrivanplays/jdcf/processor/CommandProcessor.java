@@ -0,0 +1,406 @@
+package com.mrivanplays.jdcf.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor, which checks the annotations of every JDCF command at compile time and generates a
+ * <code>CommandRegistry</code> holding their metadata, so the command manager doesn't have to read them reflectively
+ * when commands are registered.
+ *
+ * <p>The generated class is named after the <code>jdcf.registry</code> processor option, or is called
+ * <code>GeneratedCommandRegistry</code> and placed in the package of the first command found. It is generated in the
+ * first round with commands; commands generated by other processors in later rounds are still checked, but left out of
+ * the registry with a warning.
+ */
+public class CommandProcessor extends AbstractProcessor {
+
+    private static final String DATA_PACKAGE = "com.mrivanplays.jdcf.data.";
+    private static final String COMMAND_ALIASES = DATA_PACKAGE + "CommandAliases";
+    private static final String COMMAND_DESCRIPTION = DATA_PACKAGE + "CommandDescription";
+    private static final String COMMAND_USAGE = DATA_PACKAGE + "CommandUsage";
+    private static final String MARK_GUILD_ONLY = DATA_PACKAGE + "MarkGuildOnly";
+    private static final String EXECUTE_ASYNC = DATA_PACKAGE + "ExecuteAsync";
+    private static final String CONCURRENCY_LIMIT = DATA_PACKAGE + "ConcurrencyLimit";
+    private static final String COOLDOWN = DATA_PACKAGE + "Cooldown";
+    private static final String COMMAND = "com.mrivanplays.jdcf.Command";
+    private static final String REGISTRY = "com.mrivanplays.jdcf.CommandRegistry";
+    private static final String REGISTRY_OPTION = "jdcf.registry";
+
+    private static final Set<String> SUPPORTED_ANNOTATIONS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList(COMMAND_ALIASES, COMMAND_DESCRIPTION, COMMAND_USAGE, MARK_GUILD_ONLY,
+                    EXECUTE_ASYNC, CONCURRENCY_LIMIT, COOLDOWN)));
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+
+    private final Map<String, String> aliasOwners = new HashMap<>();
+    private boolean generated;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return SUPPORTED_ANNOTATIONS;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(REGISTRY_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+        Set<TypeElement> annotated = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    annotated.add((TypeElement) element);
+                }
+            }
+        }
+        TypeElement commandType = elements.getTypeElement(COMMAND);
+        if (commandType == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, COMMAND + " is not on the classpath");
+            return false;
+        }
+        List<CommandEntry> entries = new ArrayList<>();
+        for (TypeElement type : annotated) {
+            CommandEntry entry = read(type, commandType.asType());
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return false;
+        }
+        if (generated) {
+            // commands in sources generated by other processors in a later round. The registry can't be generated in
+            // the last round instead, as javac warns about every source created there
+            for (CommandEntry entry : entries) {
+                messager.printMessage(Diagnostic.Kind.WARNING, entry.type.getQualifiedName() + " was generated after "
+                        + "the command registry, so its annotations will be read on registration", entry.type);
+            }
+            return false;
+        }
+        generated = true;
+        String registryName = processingEnv.getOptions().get(REGISTRY_OPTION);
+        if (registryName == null || registryName.isEmpty()) {
+            PackageElement pkg = elements.getPackageOf(entries.get(0).type);
+            registryName = pkg.isUnnamed()
+                    ? "GeneratedCommandRegistry"
+                    : pkg.getQualifiedName() + ".GeneratedCommandRegistry";
+        }
+        int lastDot = registryName.lastIndexOf('.');
+        String registryPackage = lastDot != -1 ? registryName.substring(0, lastDot) : "";
+        for (Iterator<CommandEntry> iterator = entries.iterator(); iterator.hasNext(); ) {
+            TypeElement type = iterator.next().type;
+            if (!isAccessible(type, registryPackage)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, type.getQualifiedName() + " is not accessible from "
+                        + registryName + ", so its annotations will be read on registration", type);
+                iterator.remove();
+            }
+        }
+        generate(registryName, entries);
+        return false;
+    }
+
+    private CommandEntry read(TypeElement type, TypeMirror commandType) {
+        AnnotationMirror aliasesMirror = getMirror(type, COMMAND_ALIASES);
+        if (aliasesMirror == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Command aliases (names) not specified.", type);
+            return null;
+        }
+        if (!types.isAssignable(type.asType(), types.erasure(commandType))) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Command annotations can only be put on a subclass of "
+                    + COMMAND, type);
+            return null;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Commands cannot be abstract", type);
+            return null;
+        }
+        boolean valid = true;
+
+        String aliasesValue = (String) getValue(aliasesMirror, "value");
+        String[] aliases = aliasesValue.split("\\|", -1);
+        for (String alias : aliases) {
+            if (alias.isEmpty() || containsWhitespace(alias)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Invalid command alias '" + alias
+                        + "'; aliases cannot be empty or contain whitespace", type, aliasesMirror);
+                valid = false;
+                continue;
+            }
+            String owner = aliasOwners.putIfAbsent(alias.toLowerCase(Locale.ROOT), type.getQualifiedName().toString());
+            if (owner != null && !owner.contentEquals(type.getQualifiedName())) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Command alias '" + alias + "' is already used by "
+                        + owner, type, aliasesMirror);
+                valid = false;
+            }
+        }
+
+        AnnotationMirror descriptionMirror = getMirror(type, COMMAND_DESCRIPTION);
+        AnnotationMirror usageMirror = getMirror(type, COMMAND_USAGE);
+        AnnotationMirror executeAsyncMirror = getMirror(type, EXECUTE_ASYNC);
+        AnnotationMirror concurrencyMirror = getMirror(type, CONCURRENCY_LIMIT);
+        AnnotationMirror cooldownMirror = getMirror(type, COOLDOWN);
+
+        int concurrencyLimit = 0;
+        int concurrencyQueue = 0;
+        if (concurrencyMirror != null) {
+            concurrencyLimit = (Integer) getValue(concurrencyMirror, "value");
+            concurrencyQueue = (Integer) getValue(concurrencyMirror, "queue");
+            if (concurrencyLimit <= 0 || concurrencyQueue < 0) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Concurrency limit must be more than 0 and its queue "
+                        + "cannot be less than 0", type, concurrencyMirror);
+                valid = false;
+            }
+        }
+        int cooldownUses = 0;
+        long cooldownPer = 0;
+        String cooldownUnit = null;
+        String cooldownScope = null;
+        if (cooldownMirror != null) {
+            cooldownUses = (Integer) getValue(cooldownMirror, "uses");
+            cooldownPer = (Long) getValue(cooldownMirror, "per");
+            cooldownUnit = ((VariableElement) getValue(cooldownMirror, "unit")).getSimpleName().toString();
+            cooldownScope = ((VariableElement) getValue(cooldownMirror, "scope")).getSimpleName().toString();
+            if (cooldownUses <= 0 || cooldownPer <= 0) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Cooldown uses and period must be more than 0",
+                        type, cooldownMirror);
+                valid = false;
+            }
+        }
+        if (!valid) {
+            return null;
+        }
+
+        CommandEntry entry = new CommandEntry();
+        entry.type = type;
+        entry.aliases = aliases;
+        entry.description = descriptionMirror != null ? (String) getValue(descriptionMirror, "value") : null;
+        entry.usage = usageMirror != null ? (String) getValue(usageMirror, "value") : null;
+        entry.guildOnly = getMirror(type, MARK_GUILD_ONLY) != null;
+        entry.executeAsync = executeAsyncMirror != null ? (Boolean) getValue(executeAsyncMirror, "value") : null;
+        entry.concurrencyLimit = concurrencyLimit;
+        entry.concurrencyQueue = concurrencyQueue;
+        entry.cooldownUses = cooldownUses;
+        entry.cooldownPer = cooldownPer;
+        entry.cooldownUnit = cooldownUnit;
+        entry.cooldownScope = cooldownScope;
+        return entry;
+    }
+
+    private void generate(String registryName, List<CommandEntry> entries) {
+        int lastDot = registryName.lastIndexOf('.');
+        String packageName = lastDot != -1 ? registryName.substring(0, lastDot) : null;
+        String simpleName = registryName.substring(lastDot + 1);
+
+        Element[] originating = new Element[entries.size()];
+        for (int i = 0; i < originating.length; i++) {
+            originating[i] = entries.get(i).type;
+        }
+        try {
+            JavaFileObject source = filer.createSourceFile(registryName, originating);
+            try (Writer writer = source.openWriter()) {
+                writer.write(generateSource(packageName, simpleName, entries));
+            }
+            FileObject service = filer.createResource(StandardLocation.CLASS_OUTPUT, "",
+                    "META-INF/services/" + REGISTRY, originating);
+            try (Writer writer = service.openWriter()) {
+                writer.write(registryName);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Could not generate " + registryName + ": " + e.getMessage());
+        }
+    }
+
+    private String generateSource(String packageName, String simpleName, List<CommandEntry> entries) {
+        StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// generated by ").append(getClass().getName()).append(", do not edit\n")
+                .append("public final class ").append(simpleName).append(" implements ").append(REGISTRY)
+                .append(" {\n\n")
+                .append("    private static final java.util.Map<Class<?>, com.mrivanplays.jdcf.CommandMetadata> METADATA")
+                .append(" = new java.util.HashMap<>(").append(Math.max(16, entries.size() * 2)).append(");\n\n")
+                .append("    static {\n");
+        for (CommandEntry entry : entries) {
+            source.append("        METADATA.put(").append(entry.type.getQualifiedName()).append(".class, ")
+                    .append("new com.mrivanplays.jdcf.CommandMetadata(\n")
+                    .append("                new String[]{");
+            for (int i = 0; i < entry.aliases.length; i++) {
+                if (i != 0) {
+                    source.append(", ");
+                }
+                appendString(source, entry.aliases[i]);
+            }
+            source.append("},\n                ");
+            appendString(source, entry.description);
+            source.append(",\n                ");
+            appendString(source, entry.usage);
+            source.append(",\n                ").append(entry.guildOnly)
+                    .append(",\n                ")
+                    .append(entry.executeAsync == null ? "null" : "Boolean." + (entry.executeAsync ? "TRUE" : "FALSE"))
+                    .append(",\n                ").append(entry.concurrencyLimit)
+                    .append(",\n                ").append(entry.concurrencyQueue)
+                    .append(",\n                ").append(entry.cooldownUses)
+                    .append(",\n                ").append(entry.cooldownPer).append('L')
+                    .append(",\n                ")
+                    .append(entry.cooldownUnit == null ? "null" : "java.util.concurrent.TimeUnit." + entry.cooldownUnit)
+                    .append(",\n                ")
+                    .append(entry.cooldownScope == null ? "null" : DATA_PACKAGE + "CooldownScope." + entry.cooldownScope)
+                    .append("\n        ));\n");
+        }
+        source.append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public com.mrivanplays.jdcf.CommandMetadata getMetadata(Class<? extends ")
+                .append(COMMAND).append("> commandClass) {\n")
+                .append("        return METADATA.get(commandClass);\n")
+                .append("    }\n")
+                .append("}\n");
+        return source.toString();
+    }
+
+    private AnnotationMirror getMirror(TypeElement type, String annotationName) {
+        for (AnnotationMirror mirror : type.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object getValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalArgumentException("Annotation " + mirror + " has no value " + name);
+    }
+
+    private boolean isAccessible(TypeElement type, String registryPackage) {
+        boolean samePackage = elements.getPackageOf(type).getQualifiedName().contentEquals(registryPackage);
+        for (Element current = type; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement()) {
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || (!modifiers.contains(Modifier.PUBLIC) && !samePackage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsWhitespace(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendString(StringBuilder source, String value) {
+        if (value == null) {
+            source.append("null");
+            return;
+        }
+        source.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    source.append("\\\"");
+                    break;
+                case '\\':
+                    source.append("\\\\");
+                    break;
+                case '\n':
+                    source.append("\\n");
+                    break;
+                case '\r':
+                    source.append("\\r");
+                    break;
+                case '\t':
+                    source.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        source.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        source.append(c);
+                    }
+            }
+        }
+        source.append('"');
+    }
+
+    private static final class CommandEntry {
+        TypeElement type;
+        String[] aliases;
+        String description;
+        String usage;
+        boolean guildOnly;
+        Boolean executeAsync;
+        int concurrencyLimit;
+        int concurrencyQueue;
+        int cooldownUses;
+        long cooldownPer;
+        String cooldownUnit;
+        String cooldownScope;
+    }
+}
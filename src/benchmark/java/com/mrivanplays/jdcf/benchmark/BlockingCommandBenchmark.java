@@ -0,0 +1,65 @@
+package com.mrivanplays.jdcf.benchmark;
+
+import com.mrivanplays.jdcf.util.CommandExecutors;
+import com.mrivanplays.jdcf.util.KeyedSerialExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of command invocations, which block (like a REST call through <code>complete()</code>), ran through the
+ * per guild mailboxes on a platform thread pool and on the default command executor. On Java 21 and newer the latter
+ * runs every invocation on its own virtual thread.
+ *
+ * <p>Arguments (all optional): invocation count, guild count, milliseconds each invocation blocks, rounds.
+ */
+public final class BlockingCommandBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int invocations = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int guilds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        long blockMillis = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        System.out.println("Java " + System.getProperty("java.version") + ", virtual threads supported: "
+                + CommandExecutors.isVirtualThreadsSupported());
+        System.out.println(invocations + " invocations over " + guilds + " guilds, each blocking " + blockMillis + "ms");
+        for (int round = 1; round <= rounds; round++) {
+            // the first round warms up
+            ExecutorService platform = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            report("platform pool", round, run(platform, invocations, guilds, blockMillis), invocations);
+            ExecutorService defaultExecutor = CommandExecutors.newDefaultExecutor();
+            report("default executor", round, run(defaultExecutor, invocations, guilds, blockMillis), invocations);
+        }
+    }
+
+    private static long run(ExecutorService executor, int invocations, int guilds, long blockMillis)
+            throws InterruptedException {
+        KeyedSerialExecutor mailboxes = new KeyedSerialExecutor(() -> executor);
+        CountDownLatch done = new CountDownLatch(invocations);
+        long start = System.nanoTime();
+        for (int i = 0; i < invocations; i++) {
+            mailboxes.execute(i % guilds, () -> {
+                try {
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long took = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return took;
+    }
+
+    private static void report(String mode, int round, long tookNanos, int invocations) {
+        double seconds = tookNanos / 1e9;
+        System.out.printf("round %d, %-16s: %8.2fs, %10.0f invocations/s%n", round, mode, seconds,
+                invocations / seconds);
+    }
+}
@@ -0,0 +1,85 @@
+package com.mrivanplays.jdcf;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Case insensitive prefix tree over the aliases of the registered commands. Every node keeps the commands which have
+ * an alias in its subtree, so a prefix query costs the length of the query plus the count of results.
+ */
+final class AliasTrie {
+
+    private static final RegisteredCommand[] NO_COMMANDS = new RegisteredCommand[0];
+
+    private final Node root = new Node();
+
+    synchronized void insert(RegisteredCommand command) {
+        root.addCommand(command);
+        for (String alias : command.getAliases()) {
+            Node node = root;
+            for (int i = 0; i < alias.length(); i++) {
+                node = node.childOrCreate(fold(alias.charAt(i)));
+                node.addCommand(command);
+            }
+        }
+    }
+
+    synchronized List<RegisteredCommand> find(String startsWith) {
+        Node node = root;
+        for (int i = 0; i < startsWith.length() && node != null; i++) {
+            node = node.child(fold(startsWith.charAt(i)));
+        }
+        if (node == null || node.commands.length == 0) {
+            return Collections.emptyList();
+        }
+        // node arrays are copy on write, handing out a view is safe
+        return Collections.unmodifiableList(Arrays.asList(node.commands));
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private RegisteredCommand[] commands = NO_COMMANDS;
+
+        Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : children[index];
+        }
+
+        Node childOrCreate(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -(index + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node node = new Node();
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = node;
+            keys = newKeys;
+            children = newChildren;
+            return node;
+        }
+
+        void addCommand(RegisteredCommand command) {
+            // aliases of a command are inserted one after another, so a duplicate can only be the last one
+            if (commands.length != 0 && commands[commands.length - 1] == command) {
+                return;
+            }
+            RegisteredCommand[] newCommands = Arrays.copyOf(commands, commands.length + 1);
+            newCommands[commands.length] = command;
+            commands = newCommands;
+        }
+    }
+}
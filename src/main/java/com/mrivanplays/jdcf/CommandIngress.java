@@ -0,0 +1,225 @@
+package com.mrivanplays.jdcf;
+
+import com.mrivanplays.jdcf.settings.CommandSettings;
+import com.mrivanplays.jdcf.settings.LoadSheddingPolicy;
+import com.mrivanplays.jdcf.util.KeyedSerialExecutor;
+
+import net.dv8tion.jda.api.entities.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded stage between receiving a command and executing it. Commands wait in a queue of {@link
+ * CommandSettings#getIngressCapacity()} and get handed to the command mailboxes while less than {@link
+ * CommandSettings#getIngressWindow()} of them are executing. A mailbox gets one command at a time, so a single busy
+ * guild can't take the whole window with commands waiting in its own mailbox. Whatever doesn't fit is shed by the
+ * {@link LoadSheddingPolicy}.
+ *
+ * <p>Commands waiting behind a busy mailbox count against the capacity like any other waiting command. {@link
+ * LoadSheddingPolicy#DROP_OLDEST} evicts the oldest waiting command wherever it waits, so a flooding guild sheds its
+ * own backlog before anyone else's commands.
+ */
+final class CommandIngress {
+
+    // how long the waiting time should stay above the target before codel starts shedding
+    private static final long CODEL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Supplier<CommandSettings> settings;
+    private final KeyedSerialExecutor mailboxes;
+    private final Queue<Invocation> queue = new ArrayDeque<>();
+    // mailboxes which have a command executing or ready, with their commands waiting behind it
+    private final Map<Long, Queue<Invocation>> busyMailboxes = new HashMap<>();
+    // next commands of busy mailboxes, whose previous command finished
+    private final Queue<Invocation> ready = new ArrayDeque<>();
+    private final Logger logger = LoggerFactory.getLogger(CommandIngress.class);
+    private int queued;
+    private int executing;
+    private long aboveTargetSince = -1;
+
+    CommandIngress(Supplier<CommandSettings> settings, KeyedSerialExecutor mailboxes) {
+        this.settings = settings;
+        this.mailboxes = mailboxes;
+    }
+
+    void submit(long mailbox, Message message, Runnable task) {
+        CommandSettings settings = this.settings.get();
+        Invocation invocation = new Invocation(mailbox, message, task, System.nanoTime());
+        Invocation shed = null;
+        synchronized (this) {
+            if (queued < settings.getIngressCapacity()) {
+                queue.add(invocation);
+                queued++;
+            } else if (settings.getLoadSheddingPolicy() == LoadSheddingPolicy.DROP_OLDEST && queued > 0) {
+                shed = evictOldest();
+                queue.add(invocation);
+            } else {
+                shed = invocation;
+            }
+        }
+        if (shed != null) {
+            shed(settings, Collections.singletonList(shed));
+        }
+        dispatch();
+    }
+
+    synchronized int getQueued() {
+        return queued;
+    }
+
+    private void dispatch() {
+        CommandSettings settings = this.settings.get();
+        List<Invocation> dispatched = new ArrayList<>();
+        List<Invocation> shed = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (executing < settings.getIngressWindow()) {
+                Invocation invocation = ready.poll();
+                if (invocation == null) {
+                    invocation = queue.poll();
+                    if (invocation == null) {
+                        break;
+                    }
+                    Queue<Invocation> waiting = busyMailboxes.get(invocation.mailbox);
+                    if (waiting != null) {
+                        // its mailbox is busy, wait behind it without taking a place in the window
+                        waiting.add(invocation);
+                        continue;
+                    }
+                    busyMailboxes.put(invocation.mailbox, new ArrayDeque<>());
+                }
+                queued--;
+                if (settings.getLoadSheddingPolicy() == LoadSheddingPolicy.CODEL && shouldShed(settings, invocation, now)) {
+                    if (shed == null) {
+                        shed = new ArrayList<>();
+                    }
+                    shed.add(invocation);
+                    next(invocation.mailbox);
+                    continue;
+                }
+                executing++;
+                dispatched.add(invocation);
+            }
+        }
+        if (shed != null) {
+            shed(settings, shed);
+        }
+        for (Invocation invocation : dispatched) {
+            try {
+                mailboxes.execute(invocation.mailbox, () -> {
+                    try {
+                        invocation.task.run();
+                    } finally {
+                        finished(invocation.mailbox);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the command executor is shut down, nothing we can do about this command
+                synchronized (this) {
+                    executing--;
+                    next(invocation.mailbox);
+                }
+                logger.error("Command executor rejected a command", e);
+            }
+        }
+    }
+
+    private void finished(long mailbox) {
+        synchronized (this) {
+            executing--;
+            next(mailbox);
+        }
+        dispatch();
+    }
+
+    // called with the lock held. Every structure is in arrival order except ready, so only the heads and ready are looked at
+    private Invocation evictOldest() {
+        Invocation oldest = queue.peek();
+        Queue<Invocation> from = queue;
+        for (Invocation invocation : ready) {
+            if (oldest == null || invocation.receivedAt - oldest.receivedAt < 0) {
+                oldest = invocation;
+                from = ready;
+            }
+        }
+        for (Queue<Invocation> waiting : busyMailboxes.values()) {
+            Invocation head = waiting.peek();
+            if (head != null && (oldest == null || head.receivedAt - oldest.receivedAt < 0)) {
+                oldest = head;
+                from = waiting;
+            }
+        }
+        from.remove(oldest);
+        if (from == ready) {
+            // it was the next command of its mailbox, so the one behind it takes its place
+            next(oldest.mailbox);
+        }
+        return oldest;
+    }
+
+    // called with the lock held, once the current command of the mailbox is done with
+    private void next(long mailbox) {
+        Queue<Invocation> waiting = busyMailboxes.get(mailbox);
+        Invocation next = waiting.poll();
+        if (next == null) {
+            busyMailboxes.remove(mailbox);
+        } else {
+            ready.add(next);
+        }
+    }
+
+    private boolean shouldShed(CommandSettings settings, Invocation invocation, long now) {
+        long waited = now - invocation.receivedAt;
+        if (waited < TimeUnit.MILLISECONDS.toNanos(settings.getIngressTargetDelay())) {
+            aboveTargetSince = -1;
+            return false;
+        }
+        if (aboveTargetSince == -1) {
+            aboveTargetSince = now;
+            return false;
+        }
+        // a single slow moment doesn't shed anything, only a standing queue does
+        return now - aboveTargetSince >= CODEL_INTERVAL;
+    }
+
+    private void shed(CommandSettings settings, List<Invocation> invocations) {
+        Consumer<Message> listener = settings.getShedCommandListener();
+        if (listener == null) {
+            return;
+        }
+        for (Invocation invocation : invocations) {
+            try {
+                listener.accept(invocation.message);
+            } catch (Throwable e) {
+                logger.error("Error encountered while notifying for a shed command", e);
+            }
+        }
+    }
+
+    private static final class Invocation {
+
+        private final long mailbox;
+        private final Message message;
+        private final Runnable task;
+        private final long receivedAt;
+
+        Invocation(long mailbox, Message message, Runnable task, long receivedAt) {
+            this.mailbox = mailbox;
+            this.message = message;
+            this.task = task;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
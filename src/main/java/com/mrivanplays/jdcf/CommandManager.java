@@ -1,17 +1,18 @@
 package com.mrivanplays.jdcf;
 
-import com.mrivanplays.jdcf.args.ArgumentResolverContext;
-import com.mrivanplays.jdcf.args.ArgumentResolvers;
 import com.mrivanplays.jdcf.args.CommandArguments;
+import com.mrivanplays.jdcf.args.MessageTokens;
 import com.mrivanplays.jdcf.builtin.CommandPrefix;
 import com.mrivanplays.jdcf.builtin.help.CommandHelp;
-import com.mrivanplays.jdcf.data.CommandAliases;
-import com.mrivanplays.jdcf.data.CommandDescription;
-import com.mrivanplays.jdcf.data.CommandUsage;
-import com.mrivanplays.jdcf.data.MarkGuildOnly;
 import com.mrivanplays.jdcf.settings.CommandSettings;
+import com.mrivanplays.jdcf.settings.prefix.PrefixHandler;
 import com.mrivanplays.jdcf.util.CommandDispatcherMessage;
+import com.mrivanplays.jdcf.util.ConcurrencyLimiter;
+import com.mrivanplays.jdcf.util.CooldownLimiter;
 import com.mrivanplays.jdcf.util.EventWaiter;
+import com.mrivanplays.jdcf.util.KeyedSerialExecutor;
+import com.mrivanplays.jdcf.util.MessageDeleteScheduler;
+import com.mrivanplays.jdcf.util.UserGuildCache;
 import com.mrivanplays.jdcf.util.Utils;
 
 import net.dv8tion.jda.api.JDA;
@@ -24,26 +25,35 @@ import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.events.ShutdownEvent;
+import net.dv8tion.jda.api.events.guild.GuildJoinEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberLeaveEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.EventListener;
 import net.dv8tion.jda.api.sharding.ShardManager;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 
 /**
@@ -51,12 +61,51 @@ import javax.annotation.Nonnull;
  */
 public final class CommandManager implements EventListener {
 
-    private static final Pattern ALIAS_SPLIT_PATTERN = Pattern.compile("\\|");
+    // computed once per concrete event class
+    private static final ClassValue<EventRoute> EVENT_ROUTES = new ClassValue<EventRoute>() {
+        @Override
+        protected EventRoute computeValue(Class<?> type) {
+            if (MessageReceivedEvent.class.isAssignableFrom(type)) {
+                return EventRoute.MESSAGE;
+            }
+            if (GuildMessageReceivedEvent.class.isAssignableFrom(type)) {
+                return EventRoute.GUILD_MESSAGE;
+            }
+            if (ShutdownEvent.class.isAssignableFrom(type)) {
+                return EventRoute.SHUTDOWN;
+            }
+            if (GuildJoinEvent.class.isAssignableFrom(type)) {
+                return EventRoute.GUILD_JOIN;
+            }
+            if (GuildLeaveEvent.class.isAssignableFrom(type)) {
+                return EventRoute.GUILD_LEAVE;
+            }
+            if (GuildMemberJoinEvent.class.isAssignableFrom(type)) {
+                return EventRoute.MEMBER_JOIN;
+            }
+            if (GuildMemberLeaveEvent.class.isAssignableFrom(type)) {
+                return EventRoute.MEMBER_LEAVE;
+            }
+            return EventRoute.IGNORE;
+        }
+    };
 
     private List<RegisteredCommand> commands;
+    // command registries found by each class loader commands were registered from. Held per manager, as the
+    // registered commands already keep their class loaders reachable
+    private Map<ClassLoader, List<CommandRegistry>> registries;
+    private Map<String, RegisteredCommand> commandsByAlias;
+    private AliasTrie aliasTrie;
+    private KeyedSerialExecutor commandMailboxes;
+    private CommandIngress commandIngress;
+    private MessageDeleteScheduler messageDeleteScheduler;
+    private UserGuildCache userGuildCache;
     private CommandSettings commandSettings;
     private Logger logger;
     private List<Consumer<MessageEventSubscriber>> eventSubscribers;
+    // the bot's own mention forms, "<@id>" and "<@!id>", created on the first message
+    private volatile String selfMention;
+    private volatile String selfNickMention;
 
     public CommandManager(@NotNull JDA jda) {
         this(jda, CommandSettings.defaultSettings());
@@ -79,7 +128,15 @@ public final class CommandManager implements EventListener {
     }
 
     private void init(CommandSettings settings, Consumer<EventWaiter> waiterRegistry) {
-        commands = new ArrayList<>();
+        commands = new CopyOnWriteArrayList<>();
+        registries = new ConcurrentHashMap<>();
+        commandsByAlias = new ConcurrentHashMap<>();
+        aliasTrie = new AliasTrie();
+        commandMailboxes = new KeyedSerialExecutor(() -> commandSettings.getCommandExecutor());
+        commandIngress = new CommandIngress(() -> commandSettings, commandMailboxes);
+        messageDeleteScheduler = new MessageDeleteScheduler(
+                () -> commandSettings.getExecutorService(), () -> commandSettings.getAutoDeleteDelay());
+        userGuildCache = new UserGuildCache(settings.getUserGuildCacheSize());
         eventSubscribers = new ArrayList<>();
         logger = LoggerFactory.getLogger(CommandManager.class);
         setSettings(settings);
@@ -99,49 +156,52 @@ public final class CommandManager implements EventListener {
         }, 1, TimeUnit.SECONDS);
 
         getSettings().getExecutorService()
-                .scheduleAtFixedRate(() -> getSettings().getPrefixHandler().savePrefixes(), 5, 30, TimeUnit.MINUTES);
+                .scheduleAtFixedRate(() -> {
+                    getSettings().getPrefixHandler().savePrefixes();
+                    if (getSettings().getLanguageHandler() != null) {
+                        getSettings().getLanguageHandler().saveLanguages();
+                    }
+                }, 5, 30, TimeUnit.MINUTES);
     }
 
     /**
-     * Registers the specified command into the manager.
+     * Registers the specified command into the manager. The command's annotations are taken from a {@link
+     * CommandRegistry}, if one knows the command class, or else read reflectively.
      *
      * @param command the command you wish to register
      */
     public void registerCommand(@NotNull Command command) {
         Objects.requireNonNull(command, "Command registered cannot be null");
-        String[] aliases;
-        String description = null;
-        String usage = null;
-        boolean guildOnly = false;
         Class<? extends Command> commandClass = command.getClass();
-        CommandAliases annoAliases = commandClass.getAnnotation(CommandAliases.class);
-        Objects.requireNonNull(annoAliases, "Command aliases (names) not specified.");
-        String annoValue = annoAliases.value();
-        boolean hasCharacter = false;
-        for (char c : annoValue.toCharArray()) {
-            if (c == '|') {
-                hasCharacter = true;
+        CommandMetadata metadata = null;
+        for (CommandRegistry registry : getRegistries(commandClass.getClassLoader())) {
+            metadata = registry.getMetadata(commandClass);
+            if (metadata != null) {
                 break;
             }
         }
-        if (hasCharacter) {
-            aliases = ALIAS_SPLIT_PATTERN.split(annoAliases.value());
-        } else {
-            aliases = new String[]{annoValue};
-        }
-        CommandDescription annoDescription = commandClass.getAnnotation(CommandDescription.class);
-        if (annoDescription != null) {
-            description = annoDescription.value();
-        }
-        CommandUsage annoUsage = commandClass.getAnnotation(CommandUsage.class);
-        if (annoUsage != null) {
-            usage = annoUsage.value();
+        if (metadata == null) {
+            // not known to a generated registry, so the annotations are read the slow way
+            metadata = CommandMetadata.fromAnnotations(commandClass);
         }
-        MarkGuildOnly guildOnlyMark = commandClass.getAnnotation(MarkGuildOnly.class);
-        if (guildOnlyMark != null) {
-            guildOnly = true;
+        registerCommand(metadata.toRegisteredCommand(command));
+    }
+
+    private List<CommandRegistry> getRegistries(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return Collections.emptyList();
         }
-        registerCommand(new RegisteredCommand(command, usage, description, aliases, guildOnly));
+        return registries.computeIfAbsent(classLoader, loader -> {
+            List<CommandRegistry> found = new ArrayList<>();
+            try {
+                for (CommandRegistry registry : ServiceLoader.load(CommandRegistry.class, loader)) {
+                    found.add(registry);
+                }
+            } catch (ServiceConfigurationError e) {
+                logger.error("Could not load command registries", e);
+            }
+            return found;
+        });
     }
 
     /**
@@ -174,12 +234,24 @@ public final class CommandManager implements EventListener {
      * Registers the specified {@link RegisteredCommand} object into the manager.
      *
      * @param registeredCommand the command you want to register
+     * @throws IllegalArgumentException if any of the command's aliases is already taken by another command
      */
-    public void registerCommand(@NotNull RegisteredCommand registeredCommand) {
+    public synchronized void registerCommand(@NotNull RegisteredCommand registeredCommand) {
         Objects.requireNonNull(registeredCommand, "registeredCommand");
-        if (!commands.contains(registeredCommand)) {
-            commands.add(registeredCommand);
+        if (commands.contains(registeredCommand)) {
+            return;
         }
+        for (String alias : registeredCommand.getAliases()) {
+            RegisteredCommand present = commandsByAlias.get(foldAlias(alias));
+            Utils.checkState(present == null || present == registeredCommand,
+                    "Alias '" + alias + "' of command '" + registeredCommand.getName()
+                            + "' is already registered by command '" + (present == null ? null : present.getName()) + "'");
+        }
+        for (String alias : registeredCommand.getAliases()) {
+            commandsByAlias.put(foldAlias(alias), registeredCommand);
+        }
+        aliasTrie.insert(registeredCommand);
+        commands.add(registeredCommand);
     }
 
     /**
@@ -213,6 +285,55 @@ public final class CommandManager implements EventListener {
         commandSettings = Objects.requireNonNull(settings, "settings");
     }
 
+    /**
+     * Returns the scheduler, which deletes error replies (and the messages which caused them) after {@link
+     * CommandSettings#getAutoDeleteDelay()}.
+     *
+     * @return message delete scheduler
+     */
+    @NotNull
+    public MessageDeleteScheduler getMessageDeleteScheduler() {
+        return messageDeleteScheduler;
+    }
+
+    /**
+     * Returns the command prefix, which applies to a message of the specified author in the specified guild, or in
+     * DMs if the guild is null. For DMs, the guild whose prefix applies is cached per user, so the mutual guilds of the
+     * user aren't walked on every message.
+     *
+     * @param guild  the guild the message was sent in, or null for DMs
+     * @param author the author of the message
+     * @return prefix
+     */
+    @NotNull
+    public String getPrefix(@Nullable Guild guild, @NotNull User author) {
+        if (guild != null) {
+            return commandSettings.getPrefixHandler().getPrefix(guild.getIdLong());
+        }
+        Objects.requireNonNull(author, "author");
+        PrefixHandler prefixHandler = commandSettings.getPrefixHandler();
+        String userPrefix = prefixHandler.getUserPrefix(author.getIdLong());
+        if (userPrefix != null) {
+            return userPrefix;
+        }
+        long guildId = userGuildCache.getGuildId(author);
+        return guildId == 0 ? prefixHandler.getDefaultPrefix() : prefixHandler.getPrefix(guildId);
+    }
+
+    /**
+     * Returns the guild, whose prefix and permissions apply to DMs of the specified user. The guild is cached per user
+     * and dropped when the user or the guild joins or leaves.
+     *
+     * @param user the user
+     * @return a guild the user shares with the bot, or null if there is none
+     */
+    @Nullable
+    public Guild getDirectMessageGuild(@NotNull User user) {
+        Objects.requireNonNull(user, "user");
+        long guildId = userGuildCache.getGuildId(user);
+        return guildId == 0 ? null : user.getJDA().getGuildById(guildId);
+    }
+
     /**
      * Returns a unmodifiable list of the registered commands.
      *
@@ -223,8 +344,7 @@ public final class CommandManager implements EventListener {
     }
 
     /**
-     * Retrieves the first command found which has the specified alias as alias or the specified alias is the command's
-     * name.
+     * Retrieves the command which has the specified alias as alias or the specified alias is the command's name.
      *
      * @param alias the command name/alias for the command you wish to get
      * @return optional of registered command if present, empty optional otherwise
@@ -232,22 +352,29 @@ public final class CommandManager implements EventListener {
     public Optional<RegisteredCommand> getCommand(@NotNull String alias) {
         Objects.requireNonNull(alias, "alias");
         Utils.checkState(alias.length() != 0, "empty alias");
-        return commands.stream().filter(command -> Arrays.stream(command.getAliases()).anyMatch(al -> al.equalsIgnoreCase(alias)))
-                .findFirst();
+        return Optional.ofNullable(lookupCommand(alias));
+    }
+
+    private RegisteredCommand lookupCommand(String alias) {
+        return commandsByAlias.get(foldAlias(alias));
+    }
+
+    // String#toLowerCase returns the same instance if there is nothing to fold, so the
+    // usual all-lowercase lookups don't allocate
+    private static String foldAlias(String alias) {
+        return alias.toLowerCase(Locale.ROOT);
     }
 
     /**
-     * Finds the command(s) with the specified startsWith argument.
+     * Finds the command(s) with the specified startsWith argument. The search is case insensitive.
      *
      * @param startsWith string which starts with a command alias
-     * @return list of commands found
+     * @return unmodifiable list of commands found
      */
     @NotNull
     public List<RegisteredCommand> findCommand(@NotNull String startsWith) {
         Objects.requireNonNull(startsWith, "startsWith");
-        return commands.stream().filter(command ->
-                Arrays.stream(command.getAliases()).anyMatch(alias -> alias.toLowerCase().startsWith(startsWith.toLowerCase()))
-        ).collect(Collectors.toList());
+        return aliasTrie.find(startsWith);
     }
 
     /**
@@ -274,9 +401,9 @@ public final class CommandManager implements EventListener {
         Utils.checkState(commandLine.length() != 0, "commandLine length = 0");
         Utils.checkState(guild.getTextChannels().contains(channel), "channel should be from guild");
 
-        String[] content = commandLine.split(" ");
-        String alias = content[0];
-        String[] args = Arrays.copyOfRange(content, 1, content.length);
+        MessageTokens tokens = MessageTokens.tokenize(commandLine);
+        Utils.checkState(tokens.size() != 0, "commandLine is blank");
+        String alias = tokens.get(0);
 
         Optional<RegisteredCommand> commandOptional = getCommand(alias);
         if (commandOptional.isPresent()) {
@@ -285,7 +412,7 @@ public final class CommandManager implements EventListener {
             CommandExecutionContext context = new CommandExecutionContext(
                     new CommandDispatcherMessage(messageContent, jda, guild, channel, member, commandSettings.getExecutorService()),
                     alias, true, command.getDataAsCommandData(), this);
-            return command.execute(context, new CommandArguments(context, args));
+            return command.execute(context, new CommandArguments(context, tokens, 1));
         }
         return false;
     }
@@ -293,36 +420,67 @@ public final class CommandManager implements EventListener {
     // command execution handling and bot shutdown handling
     @Override
     public void onEvent(@Nonnull GenericEvent generic) {
-        if (commandSettings.isAllowDMSCommands()) {
-            if (generic.getClass().isAssignableFrom(MessageReceivedEvent.class)) {
-                MessageReceivedEvent event = (MessageReceivedEvent) generic;
-                Guild guild = null;
-                Member member = null;
-                if (event.getMessage().isFromGuild()) {
-                    guild = event.getGuild();
-                    member = event.getMember();
+        // every gateway event passes through here, so most of them should leave after a single lookup
+        switch (EVENT_ROUTES.get(generic.getClass())) {
+            case MESSAGE:
+                if (commandSettings.isAllowDMSCommands()) {
+                    MessageReceivedEvent event = (MessageReceivedEvent) generic;
+                    Guild guild = null;
+                    Member member = null;
+                    if (event.getMessage().isFromGuild()) {
+                        guild = event.getGuild();
+                        member = event.getMember();
+                    }
+                    handleMessage(event.getMessage(), guild, event.getJDA(), event.getChannel(), event.getAuthor(), member);
                 }
-                handleMessage(event.getMessage(), guild, event.getJDA(), event.getChannel(), event.getAuthor(), member);
-            }
-        } else {
-            if (generic.getClass().isAssignableFrom(GuildMessageReceivedEvent.class)) {
-                GuildMessageReceivedEvent event = (GuildMessageReceivedEvent) generic;
-                handleMessage(event.getMessage(), event.getGuild(), event.getJDA(), event.getChannel(), event.getAuthor(), event.getMember());
-            }
+                break;
+            case GUILD_MESSAGE:
+                if (!commandSettings.isAllowDMSCommands()) {
+                    GuildMessageReceivedEvent event = (GuildMessageReceivedEvent) generic;
+                    handleMessage(event.getMessage(), event.getGuild(), event.getJDA(), event.getChannel(), event.getAuthor(), event.getMember());
+                }
+                break;
+            case SHUTDOWN:
+                onShutdown();
+                break;
+            case GUILD_JOIN:
+                userGuildCache.onGuildJoin(((GuildJoinEvent) generic).getGuild().getIdLong());
+                break;
+            case GUILD_LEAVE:
+                userGuildCache.onGuildLeave(((GuildLeaveEvent) generic).getGuild().getIdLong());
+                break;
+            case MEMBER_JOIN:
+                GuildMemberJoinEvent joinEvent = (GuildMemberJoinEvent) generic;
+                userGuildCache.onMemberJoin(joinEvent.getGuild().getIdLong(), joinEvent.getUser().getIdLong());
+                break;
+            case MEMBER_LEAVE:
+                GuildMemberLeaveEvent leaveEvent = (GuildMemberLeaveEvent) generic;
+                userGuildCache.onMemberLeave(leaveEvent.getGuild().getIdLong(), leaveEvent.getUser().getIdLong());
+                break;
+            default:
+                break;
         }
-        if (generic.getClass().isAssignableFrom(ShutdownEvent.class)) {
-            // this event listening is basically to shutdown and terminate the
-            // executor service we have and also save prefixes to a long-term storage
-            ScheduledExecutorService executor = commandSettings.getExecutorService();
-            executor.shutdownNow();
-            try {
-                executor.awaitTermination(500, TimeUnit.NANOSECONDS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            // be aware that it's your fault if you don't implement savePrefixes method
-            // or any of the other methods for the prefix handler
-            commandSettings.getPrefixHandler().savePrefixes();
+    }
+
+    private void onShutdown() {
+        // this event listening is basically to shutdown and terminate the
+        // executor service we have and also save prefixes to a long-term storage
+        ScheduledExecutorService executor = commandSettings.getExecutorService();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(500, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        // the default command executor exists only if a command was executed asynchronously
+        if (commandSettings.hasCommandExecutor() && commandSettings.getCommandExecutor() instanceof ExecutorService) {
+            ((ExecutorService) commandSettings.getCommandExecutor()).shutdown();
+        }
+        // be aware that it's your fault if you don't implement savePrefixes method
+        // or any of the other methods for the prefix handler
+        commandSettings.getPrefixHandler().savePrefixes();
+        if (commandSettings.getLanguageHandler() != null) {
+            commandSettings.getLanguageHandler().saveLanguages();
         }
     }
 
@@ -331,177 +489,223 @@ public final class CommandManager implements EventListener {
             // we don't want to handle if the author is bot or the message is a webhook message
             return;
         }
-        String prefix;
-        if (message.isFromGuild()) {
-            prefix = commandSettings.getPrefixHandler().getPrefix(guild.getIdLong());
-        } else {
-            prefix = commandSettings.getPrefixHandler().getPrefix(author);
+        // we look only at the first token until we know this is a command, so plain messages don't allocate
+        String content = message.getContentRaw();
+        int start = MessageTokens.skipSeparators(content, 0);
+        if (!isCommandCandidate(content, start, jda, message.isFromGuild() ? null : author)) {
+            callSubscribers(message);
+            return;
         }
-        String[] content = message.getContentRaw().split(" ");
-        String aliasPrefix = content[0];
-        MessageEventSubscriber subscriberEvent = new MessageEventSubscriber(message);
-        if (commandSettings.isEnableMentionInsteadPrefix()) {
-            try {
-                ArgumentResolverContext context;
-                if (message.isFromGuild()) {
-                    context = new ArgumentResolverContext(aliasPrefix, guild, jda);
-                } else {
-                    context = new ArgumentResolverContext(aliasPrefix, jda);
-                }
-                User user = ArgumentResolvers.USER_MENTION.resolve(context);
-                if (user.getId().equalsIgnoreCase(jda.getSelfUser().getId())) {
-                    if (!executeCommand(content[1], content, 2, member, channel, author, message, jda, guild)) {
-                        callSubscribers(subscriberEvent);
-                    }
-                } else {
-                    callSubscribers(subscriberEvent);
-                }
-            } catch (Exception e) {
-                // not a mention
-                if (aliasPrefix.startsWith(prefix)) {
-                    String name = aliasPrefix.replace(prefix, "");
-                    if (!name.isEmpty()) {
-                        if (!executeCommand(name, content, 1, member, channel, author, message, jda, guild)) {
-                            callSubscribers(subscriberEvent);
-                        }
-                    } else {
-                        callSubscribers(subscriberEvent);
-                    }
-                } else {
-                    callSubscribers(subscriberEvent);
-                }
+        if (commandSettings.isEnableMentionInsteadPrefix() && isSelfMention(content, start, jda)) {
+            MessageTokens tokens = MessageTokens.tokenize(content);
+            if (tokens.size() < 2 || !executeCommand(tokens.get(1), tokens, 2, member, channel, author, message, jda, guild)) {
+                callSubscribers(message);
             }
-        } else {
-            if (aliasPrefix.startsWith(prefix)) {
-                String name = aliasPrefix.replace(prefix, "");
-                if (!name.isEmpty()) {
-                    if (!executeCommand(name, content, 1, member, channel, author, message, jda, guild)) {
-                        callSubscribers(subscriberEvent);
-                    }
-                } else {
-                    callSubscribers(subscriberEvent);
-                }
-            } else {
-                callSubscribers(subscriberEvent);
+            return;
+        }
+        String prefix = getPrefix(message.isFromGuild() ? guild : null, author);
+        int end = MessageTokens.tokenEnd(content, start);
+        if (content.startsWith(prefix, start) && end - start > prefix.length()) {
+            String name = content.substring(start + prefix.length(), end);
+            if (!executeCommand(name, MessageTokens.tokenize(content), 1, member, channel, author, message, jda, guild)) {
+                callSubscribers(message);
             }
+        } else {
+            callSubscribers(message);
+        }
+    }
+
+    // pre-filter, telling by the first character that a message can't be a command
+    private boolean isCommandCandidate(String content, int start, JDA jda, User dmAuthor) {
+        if (start == content.length()) {
+            return false;
+        }
+        char first = content.charAt(start);
+        if (first == '<' && commandSettings.isEnableMentionInsteadPrefix() && isSelfMention(content, start, jda)) {
+            return true;
+        }
+        PrefixHandler prefixHandler = commandSettings.getPrefixHandler();
+        if (prefixHandler.mayStartWithPrefix(first)) {
+            return true;
+        }
+        // user prefixes aren't in the filter, so DMs look up their author's own prefix
+        if (dmAuthor != null) {
+            String userPrefix = prefixHandler.getUserPrefix(dmAuthor.getIdLong());
+            return userPrefix != null && (userPrefix.isEmpty() || userPrefix.charAt(0) == first);
+        }
+        return false;
+    }
+
+    private boolean isSelfMention(String content, int start, JDA jda) {
+        if (selfMention == null) {
+            String selfId = jda.getSelfUser().getId();
+            selfNickMention = "<@!" + selfId + ">";
+            selfMention = "<@" + selfId + ">";
         }
+        return isWholeToken(content, start, selfMention) || isWholeToken(content, start, selfNickMention);
     }
 
-    private boolean executeCommand(String name, String[] content, int argsFrom,
+    private static boolean isWholeToken(String content, int start, String token) {
+        int end = start + token.length();
+        return content.startsWith(token, start) && (end == content.length() || MessageTokens.isSeparator(content.charAt(end)));
+    }
+
+    private boolean executeCommand(String name, MessageTokens tokens, int argsFrom,
                                    Member member, MessageChannel callbackChannel, User author, Message msg, JDA jda, Guild guild) {
-        Optional<RegisteredCommand> commandOptional = getCommand(name);
-        if (commandOptional.isPresent()) {
-            RegisteredCommand command = commandOptional.get();
-            if (command.isGuildOnly()) {
-                if (msg.isFromGuild()) {
-                    PermissionCheckContext permissionCheck = new PermissionCheckContext(jda, author, guild, member, name);
-                    if (!command.hasPermission(permissionCheck)) {
-                        callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getNoPermissionEmbed(), author).build())
-                                .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        msg.delete().queueAfter(15, TimeUnit.SECONDS);
-                        return false;
-                    }
-                    TextChannel cec = commandSettings.getCommandExecuteChannel();
-                    if (cec != null && !member.hasPermission(Permission.ADMINISTRATOR) && callbackChannel.getIdLong() != cec.getIdLong()) {
-                        callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
-                                .setDescription(commandSettings.getTranslations().getTranslation("commands_channel", cec.getAsMention()))
-                                .build()).queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        msg.delete().queueAfter(15, TimeUnit.SECONDS);
-                        return false;
-                    }
-                    try {
-                        CommandExecutionContext commandContext = new CommandExecutionContext(
-                                msg, name, false, command.getDataAsCommandData(), this
-                        );
-                        return command.execute(
-                                commandContext,
-                                new CommandArguments(commandContext, Arrays.copyOfRange(content, argsFrom, content.length)));
-                    } catch (Throwable e) {
-                        callbackChannel.sendMessage(commandSettings.getTranslations().getTranslation("error_executing")).queue();
-                        logger.error("Error encountered while executing command '" + command.getName() + "' ; ", e);
-                        return false;
-                    } finally {
-                        if (commandSettings.isLogExecutedCommands()) {
-                            logger.info("\"" + author.getAsTag() +
-                                    "\" has executed command \"" + msg.getContentRaw() +
-                                    "\" in guild \"" + guild.getName() + "\" with guild id \"" + guild.getId() + "\"");
-                        }
-                    }
-                } else {
-                    callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
-                            .setDescription(commandSettings.getTranslations().getTranslation("command_guild_only", name)).build())
-                            .queue(m -> m.delete().queueAfter(15, TimeUnit.SECONDS));
-                    return false;
+        RegisteredCommand command = lookupCommand(name);
+        if (command == null) {
+            return false;
+        }
+        if (command.shouldExecuteAsync(commandSettings.isAsyncCommandExecution())) {
+            // commands of a guild (or a DM channel) keep their order, different guilds run in parallel
+            long mailbox = guild != null ? guild.getIdLong() : callbackChannel.getIdLong();
+            Runnable task = () -> {
+                if (!runCommand(command, name, tokens, argsFrom, member, callbackChannel, author, msg, jda, guild)) {
+                    callSubscribers(msg);
                 }
+            };
+            if (commandSettings.getIngressCapacity() > 0) {
+                commandIngress.submit(mailbox, msg, task);
             } else {
-                if (msg.isFromGuild()) {
-                    PermissionCheckContext permissionCheck = new PermissionCheckContext(jda, author, guild, member, name);
-                    if (!command.hasPermission(permissionCheck)) {
-                        callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getNoPermissionEmbed(), author).build())
-                                .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        msg.delete().queueAfter(15, TimeUnit.SECONDS);
-                        return false;
-                    }
+                commandMailboxes.execute(mailbox, task);
+            }
+            return true;
+        }
+        return runCommand(command, name, tokens, argsFrom, member, callbackChannel, author, msg, jda, guild);
+    }
 
-                    TextChannel cec = commandSettings.getCommandExecuteChannel();
-                    if (cec != null && !member.hasPermission(Permission.ADMINISTRATOR) && callbackChannel.getIdLong() != cec.getIdLong()) {
-                        callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
-                                .setDescription(commandSettings.getTranslations().getTranslation("commands_channel", cec.getAsMention()))
-                                .build()).queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        msg.delete().queueAfter(15, TimeUnit.SECONDS);
-                        return false;
-                    }
-                    try {
-                        CommandExecutionContext commandContext = new CommandExecutionContext(
-                                msg, name, false, command.getDataAsCommandData(), this
-                        );
-                        return command.execute(
-                                commandContext,
-                                new CommandArguments(commandContext, Arrays.copyOfRange(content, argsFrom, content.length)));
-                    } catch (Throwable e) {
-                        callbackChannel.sendMessage(commandSettings.getTranslations().getTranslation("error_executing")).queue();
-                        logger.error("Error encountered while executing command '" + command.getName() + "' ; ", e);
-                        return false;
-                    } finally {
-                        if (commandSettings.isLogExecutedCommands()) {
-                            logger.info("\"" + author.getAsTag() +
-                                    "\" has executed command \"" + msg.getContentRaw() +
-                                    "\" in guild \"" + guild.getName() + "\" with guild id \"" + guild.getId() + "\"");
-                        }
-                    }
+    private boolean runCommand(RegisteredCommand command, String name, MessageTokens tokens, int argsFrom,
+                               Member member, MessageChannel callbackChannel, User author, Message msg, JDA jda, Guild guild) {
+        boolean fromGuild = msg.isFromGuild();
+        if (command.isGuildOnly() && !fromGuild) {
+            callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
+                    .setDescription(commandSettings.getTranslations(guild).getTranslation("command_guild_only", name)).build())
+                    .queue(messageDeleteScheduler::deleteLater);
+            return false;
+        }
+        PermissionCheckContext permissionCheck = new PermissionCheckContext(jda, author, guild, member, name);
+        if (!command.hasPermission(permissionCheck)) {
+            callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getNoPermissionEmbed(), author).build())
+                    .queue(messageDeleteScheduler::deleteLater);
+            messageDeleteScheduler.deleteLater(msg);
+            return false;
+        }
+        if (fromGuild) {
+            TextChannel cec = commandSettings.getCommandExecuteChannel();
+            if (cec != null && !member.hasPermission(Permission.ADMINISTRATOR) && callbackChannel.getIdLong() != cec.getIdLong()) {
+                callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
+                        .setDescription(commandSettings.getTranslations(guild).getTranslation("commands_channel", cec.getAsMention()))
+                        .build()).queue(messageDeleteScheduler::deleteLater);
+                messageDeleteScheduler.deleteLater(msg);
+                return false;
+            }
+        }
+        CooldownLimiter cooldown = command.getCooldownLimiter();
+        long cooldownId = 0;
+        if (cooldown != null) {
+            cooldownId = getCooldownId(cooldown, author, callbackChannel, guild);
+            long wait = cooldown.tryAcquire(cooldownId);
+            if (wait != 0) {
+                long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+                callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
+                        .setDescription(commandSettings.getTranslations(guild).getTranslation("command_cooldown", name, seconds))
+                        .build()).queue(messageDeleteScheduler::deleteLater);
+                return false;
+            }
+        }
+        ConcurrencyLimiter limiter = command.getConcurrencyLimiter();
+        if (limiter == null) {
+            return invokeCommand(command, name, tokens, argsFrom, callbackChannel, author, msg, guild);
+        }
+        if (limiter.tryAcquire()) {
+            try {
+                return invokeCommand(command, name, tokens, argsFrom, callbackChannel, author, msg, guild);
+            } finally {
+                limiter.release();
+            }
+        }
+        // queued invocations go back through the mailbox of their guild, so they don't run alongside its other commands
+        long mailbox = guild != null ? guild.getIdLong() : callbackChannel.getIdLong();
+        long queuedCooldownId = cooldownId;
+        boolean queued = limiter.offer(() -> {
+            if (!invokeCommand(command, name, tokens, argsFrom, callbackChannel, author, msg, guild)) {
+                callSubscribers(msg);
+            }
+        }, task -> commandMailboxes.execute(mailbox, task), () -> {
+            // the executor got shut down before the invocation got its turn
+            if (cooldown != null) {
+                cooldown.refund(queuedCooldownId);
+            }
+        });
+        if (!queued) {
+            // the command is saturated, reject right away instead of letting it take every thread we have. The user
+            // didn't get to use the command, so they get their cooldown use back
+            if (cooldown != null) {
+                cooldown.refund(cooldownId);
+            }
+            callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getErrorEmbed(), author)
+                    .setDescription(commandSettings.getTranslations(guild).getTranslation("command_busy", name)).build())
+                    .queue(messageDeleteScheduler::deleteLater);
+        }
+        return queued;
+    }
+
+    private static long getCooldownId(CooldownLimiter cooldown, User author, MessageChannel channel, Guild guild) {
+        switch (cooldown.getScope()) {
+            case GUILD:
+                return guild != null ? guild.getIdLong() : channel.getIdLong();
+            case CHANNEL:
+                return channel.getIdLong();
+            default:
+                return author.getIdLong();
+        }
+    }
+
+    private boolean invokeCommand(RegisteredCommand command, String name, MessageTokens tokens, int argsFrom,
+                                  MessageChannel callbackChannel, User author, Message msg, Guild guild) {
+        try {
+            CommandExecutionContext commandContext = new CommandExecutionContext(
+                    msg, name, false, command.getDataAsCommandData(), this
+            );
+            return command.execute(commandContext, new CommandArguments(commandContext, tokens, argsFrom));
+        } catch (Throwable e) {
+            callbackChannel.sendMessage(commandSettings.getTranslations(guild).getTranslation("error_executing")).queue();
+            logger.error("Error encountered while executing command '" + command.getName() + "' ; ", e);
+            return false;
+        } finally {
+            if (commandSettings.isLogExecutedCommands()) {
+                if (msg.isFromGuild()) {
+                    logger.info("\"" + author.getAsTag() +
+                            "\" has executed command \"" + msg.getContentRaw() +
+                            "\" in guild \"" + guild.getName() + "\" with guild id \"" + guild.getId() + "\"");
                 } else {
-                    PermissionCheckContext permissionCheck = new PermissionCheckContext(jda, author, guild, member, name);
-                    if (!command.hasPermission(permissionCheck)) {
-                        callbackChannel.sendMessage(Utils.setAuthor(commandSettings.getNoPermissionEmbed(), author).build())
-                                .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        return false;
-                    }
-                    try {
-                        CommandExecutionContext commandContext = new CommandExecutionContext(
-                                msg, name, false, command.getDataAsCommandData(), this
-                        );
-                        return command.execute(
-                                commandContext,
-                                new CommandArguments(commandContext, Arrays.copyOfRange(content, argsFrom, content.length)));
-                    } catch (Throwable e) {
-                        callbackChannel.sendMessage(commandSettings.getTranslations().getTranslation("error_executing")).queue();
-                        logger.error("Error encountered while executing command '" + command.getName() + "' ; ", e);
-                        return false;
-                    } finally {
-                        if (commandSettings.isLogExecutedCommands()) {
-                            logger.info("\"" + author.getAsTag() + "\" has executed command \"" + msg.getContentRaw() + "\" in DMs");
-                        }
-                    }
+                    logger.info("\"" + author.getAsTag() + "\" has executed command \"" + msg.getContentRaw() + "\" in DMs");
                 }
             }
-        } else {
-            return false;
         }
     }
 
-    private void callSubscribers(MessageEventSubscriber event) {
+    private void callSubscribers(Message message) {
+        if (eventSubscribers.isEmpty()) {
+            return;
+        }
+        MessageEventSubscriber event = new MessageEventSubscriber(message);
         for (Consumer<MessageEventSubscriber> subscriber : eventSubscribers) {
             subscriber.accept(event);
         }
     }
+
+    /**
+     * What {@link #onEvent(GenericEvent)} does with an event of a class.
+     */
+    private enum EventRoute {
+        MESSAGE,
+        GUILD_MESSAGE,
+        SHUTDOWN,
+        GUILD_JOIN,
+        GUILD_LEAVE,
+        MEMBER_JOIN,
+        MEMBER_LEAVE,
+        IGNORE
+    }
 }
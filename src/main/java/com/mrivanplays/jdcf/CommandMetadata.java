@@ -0,0 +1,178 @@
+package com.mrivanplays.jdcf;
+
+import com.mrivanplays.jdcf.data.CommandAliases;
+import com.mrivanplays.jdcf.data.CommandDescription;
+import com.mrivanplays.jdcf.data.CommandUsage;
+import com.mrivanplays.jdcf.data.ConcurrencyLimit;
+import com.mrivanplays.jdcf.data.Cooldown;
+import com.mrivanplays.jdcf.data.CooldownScope;
+import com.mrivanplays.jdcf.data.ExecuteAsync;
+import com.mrivanplays.jdcf.data.MarkGuildOnly;
+import com.mrivanplays.jdcf.util.ConcurrencyLimiter;
+import com.mrivanplays.jdcf.util.CooldownLimiter;
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Represents what the annotations of a {@link Command} class say about it. Read from the annotations at runtime, or
+ * precomputed at compile time into a {@link CommandRegistry}.
+ */
+public final class CommandMetadata {
+
+    private static final Pattern ALIAS_SPLIT_PATTERN = Pattern.compile("\\|");
+
+    /**
+     * Reads the metadata out of the annotations of the specified command class.
+     *
+     * @param commandClass command class
+     * @return metadata
+     * @throws NullPointerException     if the class has no {@link CommandAliases}
+     * @throws IllegalArgumentException if a {@link ConcurrencyLimit} or {@link Cooldown} is invalid
+     */
+    @NotNull
+    public static CommandMetadata fromAnnotations(@NotNull Class<? extends Command> commandClass) {
+        Objects.requireNonNull(commandClass, "commandClass");
+        CommandAliases annoAliases = commandClass.getAnnotation(CommandAliases.class);
+        Objects.requireNonNull(annoAliases, "Command aliases (names) not specified.");
+        String annoValue = annoAliases.value();
+        String[] aliases = annoValue.indexOf('|') != -1 ? ALIAS_SPLIT_PATTERN.split(annoValue) : new String[]{annoValue};
+        CommandDescription annoDescription = commandClass.getAnnotation(CommandDescription.class);
+        CommandUsage annoUsage = commandClass.getAnnotation(CommandUsage.class);
+        ExecuteAsync executeAsyncMark = commandClass.getAnnotation(ExecuteAsync.class);
+        ConcurrencyLimit concurrencyLimit = commandClass.getAnnotation(ConcurrencyLimit.class);
+        if (concurrencyLimit != null) {
+            // 0 means no limit to the constructor, so an invalid annotation would silently drop the limit
+            Utils.checkState(concurrencyLimit.value() > 0, "Concurrency limit should be positive");
+            Utils.checkState(concurrencyLimit.queue() >= 0, "Concurrency limit queue cannot be negative");
+        }
+        Cooldown cooldown = commandClass.getAnnotation(Cooldown.class);
+        return new CommandMetadata(
+                aliases,
+                annoDescription != null ? annoDescription.value() : null,
+                annoUsage != null ? annoUsage.value() : null,
+                commandClass.isAnnotationPresent(MarkGuildOnly.class),
+                executeAsyncMark != null ? executeAsyncMark.value() : null,
+                concurrencyLimit != null ? concurrencyLimit.value() : 0,
+                concurrencyLimit != null ? concurrencyLimit.queue() : 0,
+                cooldown != null ? cooldown.uses() : 0,
+                cooldown != null ? cooldown.per() : 0,
+                cooldown != null ? cooldown.unit() : null,
+                cooldown != null ? cooldown.scope() : null
+        );
+    }
+
+    private final String[] aliases;
+    private final String description;
+    private final String usage;
+    private final boolean guildOnly;
+    private final Boolean executeAsync;
+    private final int concurrencyLimit;
+    private final int concurrencyQueue;
+    private final int cooldownUses;
+    private final long cooldownPer;
+    private final TimeUnit cooldownUnit;
+    private final CooldownScope cooldownScope;
+
+    /**
+     * Creates new metadata. Limits which are 0 (and units which are null) mean the command has no such limit.
+     *
+     * @param aliases          aliases, the first one being the name
+     * @param description      description
+     * @param usage            usage
+     * @param guildOnly        whenever the command is guild only
+     * @param executeAsync     whenever the command runs on the command executor, or null for the default
+     * @param concurrencyLimit {@link ConcurrencyLimit#value()}
+     * @param concurrencyQueue {@link ConcurrencyLimit#queue()}
+     * @param cooldownUses     {@link Cooldown#uses()}
+     * @param cooldownPer      {@link Cooldown#per()}
+     * @param cooldownUnit     {@link Cooldown#unit()}
+     * @param cooldownScope    {@link Cooldown#scope()}
+     * @throws IllegalArgumentException if the concurrency limit or its queue is negative
+     */
+    public CommandMetadata(@NotNull String[] aliases, @Nullable String description, @Nullable String usage,
+                           boolean guildOnly, @Nullable Boolean executeAsync, int concurrencyLimit, int concurrencyQueue,
+                           int cooldownUses, long cooldownPer, @Nullable TimeUnit cooldownUnit,
+                           @Nullable CooldownScope cooldownScope) {
+        this.aliases = Objects.requireNonNull(aliases, "aliases");
+        Utils.checkState(concurrencyLimit >= 0, "Concurrency limit cannot be negative");
+        Utils.checkState(concurrencyQueue >= 0, "Concurrency limit queue cannot be negative");
+        this.description = description;
+        this.usage = usage;
+        this.guildOnly = guildOnly;
+        this.executeAsync = executeAsync;
+        this.concurrencyLimit = concurrencyLimit;
+        this.concurrencyQueue = concurrencyQueue;
+        this.cooldownUses = cooldownUses;
+        this.cooldownPer = cooldownPer;
+        this.cooldownUnit = cooldownUnit;
+        this.cooldownScope = cooldownScope;
+    }
+
+    /**
+     * Returns a copy of the aliases.
+     *
+     * @return aliases
+     */
+    @NotNull
+    public String[] getAliases() {
+        return Arrays.copyOf(aliases, aliases.length);
+    }
+
+    /**
+     * Returns the description.
+     *
+     * @return description
+     */
+    @Nullable
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the usage.
+     *
+     * @return usage
+     */
+    @Nullable
+    public String getUsage() {
+        return usage;
+    }
+
+    /**
+     * Returns whenever the command is guild only.
+     *
+     * @return guild only
+     */
+    public boolean isGuildOnly() {
+        return guildOnly;
+    }
+
+    /**
+     * Creates a {@link RegisteredCommand} of the specified command, out of this metadata. Every call creates new
+     * limiters, so each registered command counts its own uses.
+     *
+     * @param command command
+     * @return registered command
+     */
+    @NotNull
+    public RegisteredCommand toRegisteredCommand(@NotNull Command command) {
+        Objects.requireNonNull(command, "command");
+        ConcurrencyLimiter concurrencyLimiter = null;
+        if (concurrencyLimit > 0) {
+            concurrencyLimiter = new ConcurrencyLimiter(concurrencyLimit, concurrencyQueue);
+        }
+        CooldownLimiter cooldownLimiter = null;
+        if (cooldownUnit != null) {
+            cooldownLimiter = new CooldownLimiter(cooldownScope, cooldownUses, cooldownPer, cooldownUnit);
+        }
+        return new RegisteredCommand(command, usage, description, getAliases(), guildOnly, executeAsync,
+                concurrencyLimiter, cooldownLimiter);
+    }
+}
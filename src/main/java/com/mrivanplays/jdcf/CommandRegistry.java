@@ -0,0 +1,21 @@
+package com.mrivanplays.jdcf;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a registry of precomputed {@link CommandMetadata}, so {@link CommandManager#registerCommand(Command)}
+ * doesn't have to read the command annotations reflectively. Registries are found with {@link java.util.ServiceLoader},
+ * and are usually generated by the JDCF annotation processor.
+ */
+public interface CommandRegistry {
+
+    /**
+     * Returns the metadata of the specified command class.
+     *
+     * @param commandClass command class
+     * @return metadata, or null if this registry doesn't know the class
+     */
+    @Nullable
+    CommandMetadata getMetadata(@NotNull Class<? extends Command> commandClass);
+}
@@ -1,6 +1,8 @@
 package com.mrivanplays.jdcf;
 
 import com.mrivanplays.jdcf.args.CommandArguments;
+import com.mrivanplays.jdcf.util.ConcurrencyLimiter;
+import com.mrivanplays.jdcf.util.CooldownLimiter;
 
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Member;
@@ -21,13 +23,35 @@ public final class RegisteredCommand {
     private final String description;
     private final String[] aliases;
     private final boolean guildOnly;
+    private final Boolean executeAsync;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final CooldownLimiter cooldownLimiter;
 
     public RegisteredCommand(Command command, String usage, String description, String[] aliases, boolean guildOnly) {
+        this(command, usage, description, aliases, guildOnly, null, null, null);
+    }
+
+    public RegisteredCommand(Command command, String usage, String description, String[] aliases, boolean guildOnly,
+                             @Nullable Boolean executeAsync) {
+        this(command, usage, description, aliases, guildOnly, executeAsync, null, null);
+    }
+
+    public RegisteredCommand(Command command, String usage, String description, String[] aliases, boolean guildOnly,
+                             @Nullable Boolean executeAsync, @Nullable ConcurrencyLimiter concurrencyLimiter) {
+        this(command, usage, description, aliases, guildOnly, executeAsync, concurrencyLimiter, null);
+    }
+
+    public RegisteredCommand(Command command, String usage, String description, String[] aliases, boolean guildOnly,
+                             @Nullable Boolean executeAsync, @Nullable ConcurrencyLimiter concurrencyLimiter,
+                             @Nullable CooldownLimiter cooldownLimiter) {
         this.command = command;
         this.usage = usage;
         this.description = description;
         this.aliases = aliases;
         this.guildOnly = guildOnly;
+        this.executeAsync = executeAsync;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.cooldownLimiter = cooldownLimiter;
     }
 
     /**
@@ -99,6 +123,39 @@ public final class RegisteredCommand {
         return guildOnly;
     }
 
+    /**
+     * Returns whenever this command should be executed on the command executor.
+     *
+     * @param byDefault what the settings say, used if the command doesn't override it
+     * @return <code>true</code> if the command should be executed asynchronously, <code>false</code> otherwise
+     * @see com.mrivanplays.jdcf.data.ExecuteAsync
+     */
+    public boolean shouldExecuteAsync(boolean byDefault) {
+        return executeAsync == null ? byDefault : executeAsync;
+    }
+
+    /**
+     * Returns the limiter of how many invocations of this command may run at the same time.
+     *
+     * @return concurrency limiter, or null if the command isn't limited
+     * @see com.mrivanplays.jdcf.data.ConcurrencyLimit
+     */
+    @Nullable
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Returns the limiter of how often this command can be used.
+     *
+     * @return cooldown limiter, or null if the command has no cooldown
+     * @see com.mrivanplays.jdcf.data.Cooldown
+     */
+    @Nullable
+    public CooldownLimiter getCooldownLimiter() {
+        return cooldownLimiter;
+    }
+
     /**
      * Executes the command with the specified context and arguments.
      *
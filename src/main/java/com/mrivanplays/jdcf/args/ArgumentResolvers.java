@@ -1,113 +1,205 @@
 package com.mrivanplays.jdcf.args;
 
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.TextChannel;
 import net.dv8tion.jda.api.entities.User;
 
-import org.jetbrains.annotations.NotNull;
-
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * A utility class containing the default argument resolvers.
+ * A utility class containing the default argument resolvers. The <code>*_RESULT</code> fields are {@link
+ * ResultArgumentResolver}s, checking the argument's shape before parsing it, so an argument of the wrong type doesn't
+ * cost an exception.
  */
 public final class ArgumentResolvers {
 
-    public static ArgumentResolver<Integer> INTEGER = context -> Integer.parseInt(context.getArgument());
-    public static ArgumentResolver<Double> DOUBLE = context -> Double.parseDouble(context.getArgument());
-    public static ArgumentResolver<Float> FLOAT = context -> Float.parseFloat(context.getArgument());
-
-    public static ArgumentResolver<User> USER_MENTION = new ArgumentResolver<User>() {
-
-        private final Pattern UM_PATTERN = Pattern.compile("<@!?(\\d{17,20})>");
-
-        @Override
-        public User resolve(@NotNull ArgumentResolverContext context) throws Exception {
-            Matcher matcher = UM_PATTERN.matcher(context.getArgument());
-            if (matcher.matches()) {
-                User user = context.getJda().getUserById(matcher.group(1));
-                if (user == null) {
-                    // represent that the value present wasn't a mention
-                    throw new IllegalArgumentException();
-                } else {
-                    return user;
-                }
-            } else {
-                // represent that the value wasn't a mention
-                throw new IllegalArgumentException();
-            }
+    public static ResultArgumentResolver<Integer> INTEGER_RESULT = context -> {
+        String argument = context.getArgument();
+        if (!isInteger(argument)) {
+            return ResolveResult.notType();
+        }
+        try {
+            return ResolveResult.success(Integer.parseInt(argument));
+        } catch (NumberFormatException e) {
+            // out of range
+            return ResolveResult.notType();
         }
     };
 
-    public static ArgumentResolver<User> USER_ID = context -> {
-        User user = context.getJda().getUserById(Long.parseLong(context.getArgument()));
-        if (user == null) {
-            throw new IllegalArgumentException();
-        } else {
-            return user;
+    public static ResultArgumentResolver<Double> DOUBLE_RESULT = context -> {
+        String argument = context.getArgument();
+        if (!mayBeDecimal(argument)) {
+            return ResolveResult.notType();
+        }
+        try {
+            return ResolveResult.success(Double.parseDouble(argument));
+        } catch (NumberFormatException e) {
+            return ResolveResult.notType();
         }
     };
 
-    public static ArgumentResolver<User> USER = context -> {
+    public static ResultArgumentResolver<Float> FLOAT_RESULT = context -> {
+        String argument = context.getArgument();
+        if (!mayBeDecimal(argument)) {
+            return ResolveResult.notType();
+        }
         try {
-            return USER_ID.resolve(context);
-        } catch (Exception e) {
-            return USER_MENTION.resolve(context);
+            return ResolveResult.success(Float.parseFloat(argument));
+        } catch (NumberFormatException e) {
+            return ResolveResult.notType();
         }
     };
 
-    public static ArgumentResolver<Role> ROLE_NAME = context -> {
-        List<Role> roles = context.getGuild().getRolesByName(context.getArgument(), true);
-        if (roles.isEmpty()) {
-            throw new IllegalArgumentException();
-        } else {
-            return roles.get(0);
+    public static ResultArgumentResolver<User> USER_MENTION_RESULT = context -> {
+        String argument = context.getArgument();
+        // <@id> or <@!id>
+        if (argument.length() < 4 || !argument.startsWith("<@") || argument.charAt(argument.length() - 1) != '>') {
+            return ResolveResult.notType();
+        }
+        int from = argument.charAt(2) == '!' ? 3 : 2;
+        int to = argument.length() - 1;
+        if (to - from < 17 || to - from > 20) {
+            return ResolveResult.notType();
         }
+        long id = parseSnowflake(argument, from, to);
+        if (id == -1) {
+            return ResolveResult.notType();
+        }
+        return found(context.getJda().getUserById(id));
     };
 
-    public static ArgumentResolver<Role> ROLE_ID = context -> {
-        Role role = context.getGuild().getRoleById(context.getArgument());
-        if (role == null) {
-            throw new IllegalArgumentException();
-        } else {
-            return role;
+    public static ResultArgumentResolver<User> USER_ID_RESULT = context -> {
+        long id = parseSnowflake(context.getArgument(), 0, context.getArgument().length());
+        if (id == -1) {
+            return ResolveResult.notType();
         }
+        return found(context.getJda().getUserById(id));
     };
 
-    public static ArgumentResolver<Role> ROLE = context -> {
-        try {
-            return ROLE_NAME.resolve(context);
-        } catch (Exception e) {
-            return ROLE_ID.resolve(context);
-        }
+    public static ResultArgumentResolver<User> USER_RESULT = context -> {
+        ResolveResult<User> result = USER_ID_RESULT.tryResolve(context);
+        return result.isSuccess() ? result : USER_MENTION_RESULT.tryResolve(context);
     };
 
-    public static ArgumentResolver<TextChannel> CHANNEL_NAME = context -> {
-        List<TextChannel> channels = context.getGuild().getTextChannelsByName(context.getArgument(), true);
+    public static ResultArgumentResolver<Role> ROLE_NAME_RESULT = context -> {
+        Guild guild = context.getGuild();
+        if (guild == null) {
+            return ResolveResult.notType();
+        }
+        List<Role> roles = guild.getRolesByName(context.getArgument(), true);
+        return roles.isEmpty() ? ResolveResult.notType() : ResolveResult.success(roles.get(0));
+    };
 
-        if (channels.isEmpty()) {
-            throw new IllegalArgumentException();
-        } else {
-            return channels.get(0);
+    public static ResultArgumentResolver<Role> ROLE_ID_RESULT = context -> {
+        Guild guild = context.getGuild();
+        long id = parseSnowflake(context.getArgument(), 0, context.getArgument().length());
+        if (guild == null || id == -1) {
+            return ResolveResult.notType();
         }
+        return found(guild.getRoleById(id));
+    };
+
+    public static ResultArgumentResolver<Role> ROLE_RESULT = context -> {
+        ResolveResult<Role> result = ROLE_NAME_RESULT.tryResolve(context);
+        return result.isSuccess() ? result : ROLE_ID_RESULT.tryResolve(context);
     };
 
-    public static ArgumentResolver<TextChannel> CHANNEL_ID = context -> {
-        TextChannel channel = context.getGuild().getTextChannelById(context.getArgument());
-        if (channel == null) {
-            throw new IllegalArgumentException();
-        } else {
-            return channel;
+    public static ResultArgumentResolver<TextChannel> CHANNEL_NAME_RESULT = context -> {
+        Guild guild = context.getGuild();
+        if (guild == null) {
+            return ResolveResult.notType();
         }
+        List<TextChannel> channels = guild.getTextChannelsByName(context.getArgument(), true);
+        return channels.isEmpty() ? ResolveResult.notType() : ResolveResult.success(channels.get(0));
     };
 
-    public static ArgumentResolver<TextChannel> CHANNEL = context -> {
-        try {
-            return CHANNEL_NAME.resolve(context);
-        } catch (Exception e) {
-            return CHANNEL_ID.resolve(context);
+    public static ResultArgumentResolver<TextChannel> CHANNEL_ID_RESULT = context -> {
+        Guild guild = context.getGuild();
+        long id = parseSnowflake(context.getArgument(), 0, context.getArgument().length());
+        if (guild == null || id == -1) {
+            return ResolveResult.notType();
         }
+        return found(guild.getTextChannelById(id));
+    };
+
+    public static ResultArgumentResolver<TextChannel> CHANNEL_RESULT = context -> {
+        ResolveResult<TextChannel> result = CHANNEL_NAME_RESULT.tryResolve(context);
+        return result.isSuccess() ? result : CHANNEL_ID_RESULT.tryResolve(context);
     };
+
+    // the previous, throwing resolver fields, kept for binary compatibility. They hold the same resolvers as the
+    // *_RESULT fields, so they still skip the exception when passed to CommandArguments#next
+
+    public static ArgumentResolver<Integer> INTEGER = INTEGER_RESULT;
+    public static ArgumentResolver<Double> DOUBLE = DOUBLE_RESULT;
+    public static ArgumentResolver<Float> FLOAT = FLOAT_RESULT;
+    public static ArgumentResolver<User> USER_MENTION = USER_MENTION_RESULT;
+    public static ArgumentResolver<User> USER_ID = USER_ID_RESULT;
+    public static ArgumentResolver<User> USER = USER_RESULT;
+    public static ArgumentResolver<Role> ROLE_NAME = ROLE_NAME_RESULT;
+    public static ArgumentResolver<Role> ROLE_ID = ROLE_ID_RESULT;
+    public static ArgumentResolver<Role> ROLE = ROLE_RESULT;
+    public static ArgumentResolver<TextChannel> CHANNEL_NAME = CHANNEL_NAME_RESULT;
+    public static ArgumentResolver<TextChannel> CHANNEL_ID = CHANNEL_ID_RESULT;
+    public static ArgumentResolver<TextChannel> CHANNEL = CHANNEL_RESULT;
+
+    private static <T> ResolveResult<T> found(T value) {
+        // a id which doesn't point to anything means the argument wasn't what we wanted
+        return value == null ? ResolveResult.notType() : ResolveResult.success(value);
+    }
+
+    private static boolean isInteger(String argument) {
+        int from = 0;
+        if (!argument.isEmpty() && (argument.charAt(0) == '-' || argument.charAt(0) == '+')) {
+            from = 1;
+        }
+        int digits = argument.length() - from;
+        if (digits == 0 || digits > 10) {
+            return false;
+        }
+        for (int i = from; i < argument.length(); i++) {
+            if (!isDigit(argument.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // rejects what clearly isn't a number, the rest is left for the parser to decide
+    private static boolean mayBeDecimal(String argument) {
+        if (argument.isEmpty()) {
+            return false;
+        }
+        char first = argument.charAt(0);
+        return isDigit(first) || first == '-' || first == '+' || first == '.' || first == 'N' || first == 'I';
+    }
+
+    /**
+     * Parses a snowflake id out of the specified part of the string.
+     *
+     * @return the id, or -1 if the part isn't a valid id
+     */
+    private static long parseSnowflake(String argument, int from, int to) {
+        if (to <= from || to - from > 20) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = from; i < to; i++) {
+            char c = argument.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            int digit = c - '0';
+            if (id > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
@@ -17,7 +17,7 @@ import javax.annotation.CheckReturnValue;
  */
 public final class CommandArguments {
 
-    private final List<String> args;
+    private List<String> args;
     private final CommandExecutionContext commandContext;
     private FailReasonHandler failReasonHandler;
 
@@ -25,6 +25,10 @@ public final class CommandArguments {
         this(commandContext, new ArrayList<>(Arrays.asList(args)));
     }
 
+    public CommandArguments(CommandExecutionContext commandContext, MessageTokens tokens, int fromToken) {
+        this(commandContext, tokens.asList(fromToken));
+    }
+
     public CommandArguments(CommandExecutionContext commandContext, List<String> args) {
         this.args = args;
         this.commandContext = commandContext;
@@ -120,7 +124,15 @@ public final class CommandArguments {
             return ArgumentOptional.of(null, FailReason.ARGUMENT_NOT_TYPED, null, commandContext, failReasonHandler);
         }
         try {
-            T resolved = resolver.resolve(new ArgumentResolverContext(argument, commandContext.getGuild(), commandContext.getJda()));
+            ArgumentResolverContext resolverContext = new ArgumentResolverContext(argument, commandContext.getGuild(), commandContext.getJda());
+            if (resolver instanceof ResultArgumentResolver) {
+                ResolveResult<T> result = ((ResultArgumentResolver<T>) resolver).tryResolve(resolverContext);
+                if (!result.isSuccess()) {
+                    return ArgumentOptional.of(null, result.getFailReason(), argument, commandContext, failReasonHandler);
+                }
+                return ArgumentOptional.of(result.getValue(), FailReason.NO_FAIL_REASON, argument, commandContext, failReasonHandler);
+            }
+            T resolved = resolver.resolve(resolverContext);
             if (resolved == null) {
                 return ArgumentOptional.of(null, FailReason.ARGUMENT_PARSED_NULL, argument, commandContext, failReasonHandler);
             }
@@ -133,7 +145,7 @@ public final class CommandArguments {
     @NotNull
     @CheckReturnValue
     public ArgumentOptional<Integer> nextInt() {
-        return next(ArgumentResolvers.INTEGER);
+        return next(ArgumentResolvers.INTEGER_RESULT);
     }
 
     @NotNull
@@ -152,13 +164,13 @@ public final class CommandArguments {
     @NotNull
     @CheckReturnValue
     public ArgumentOptional<Double> nextDouble() {
-        return next(ArgumentResolvers.DOUBLE);
+        return next(ArgumentResolvers.DOUBLE_RESULT);
     }
 
     @NotNull
     @CheckReturnValue
     public ArgumentOptional<Float> nextFloat() {
-        return next(ArgumentResolvers.FLOAT);
+        return next(ArgumentResolvers.FLOAT_RESULT);
     }
 
     /**
@@ -237,6 +249,10 @@ public final class CommandArguments {
      */
     @NotNull
     public List<String> getArgsLeftList() {
+        if (!(args instanceof ArrayList)) {
+            // arguments read from the message are a lazy, read-only view; callers of this method may modify the list
+            args = new ArrayList<>(args);
+        }
         return args;
     }
 
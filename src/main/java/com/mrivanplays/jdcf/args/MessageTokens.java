@@ -0,0 +1,163 @@
+package com.mrivanplays.jdcf.args;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents a message content, split into tokens. The tokens are kept as offsets over the original content, so a
+ * token's {@link String} is only created when someone asks for it. Any run of whitespace characters (spaces, tabs, new
+ * lines) separates two tokens.
+ */
+public final class MessageTokens {
+
+    /**
+     * Splits the specified content into tokens.
+     *
+     * @param content the content you want to tokenize
+     * @return tokens
+     */
+    @NotNull
+    public static MessageTokens tokenize(@NotNull String content) {
+        Objects.requireNonNull(content, "content");
+        int[] bounds = new int[8];
+        int count = 0;
+        int position = skipSeparators(content, 0);
+        while (position < content.length()) {
+            int end = tokenEnd(content, position);
+            if ((count << 1) == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length << 1);
+            }
+            bounds[count << 1] = position;
+            bounds[(count << 1) + 1] = end;
+            count++;
+            position = skipSeparators(content, end);
+        }
+        return new MessageTokens(content, bounds, count);
+    }
+
+    /**
+     * Returns whenever the specified character separates tokens.
+     *
+     * @param c character
+     * @return <code>true</code> if separator, <code>false</code> otherwise
+     */
+    public static boolean isSeparator(char c) {
+        return Character.isWhitespace(c);
+    }
+
+    /**
+     * Returns the index of the first non separator character at or after the specified index.
+     *
+     * @param content content
+     * @param from    index to start from
+     * @return index of the next token start, or the content length if there are no more tokens
+     */
+    public static int skipSeparators(@NotNull CharSequence content, int from) {
+        int position = from;
+        while (position < content.length() && isSeparator(content.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Returns the (exclusive) end index of the token starting at the specified index.
+     *
+     * @param content content
+     * @param from    token start
+     * @return token end
+     */
+    public static int tokenEnd(@NotNull CharSequence content, int from) {
+        int position = from;
+        while (position < content.length() && !isSeparator(content.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private final String content;
+    private final int[] bounds;
+    private final int count;
+
+    private MessageTokens(String content, int[] bounds, int count) {
+        this.content = content;
+        this.bounds = bounds;
+        this.count = count;
+    }
+
+    /**
+     * Returns the content these tokens were made of.
+     *
+     * @return content
+     */
+    @NotNull
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Returns the count of tokens.
+     *
+     * @return token count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the start index of the specified token in the content.
+     *
+     * @param index token index
+     * @return start index
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return bounds[index << 1];
+    }
+
+    /**
+     * Returns the (exclusive) end index of the specified token in the content.
+     *
+     * @param index token index
+     * @return end index
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return bounds[(index << 1) + 1];
+    }
+
+    /**
+     * Creates the string of the specified token.
+     *
+     * @param index token index
+     * @return token
+     */
+    @NotNull
+    public String get(int index) {
+        return content.substring(start(index), end(index));
+    }
+
+    /**
+     * Returns a list view over the tokens starting at the specified index. Tokens are turned into strings only when
+     * retrieved. The list supports removal, which doesn't affect these tokens.
+     *
+     * @param fromIndex first token in the list
+     * @return list view
+     */
+    @NotNull
+    public List<String> asList(int fromIndex) {
+        if (fromIndex < 0 || fromIndex > count) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", size: " + count);
+        }
+        return new TokenList(this, fromIndex);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + count);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mrivanplays.jdcf.args;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Represents the outcome of a {@link ResultArgumentResolver}: either a resolved value or the {@link FailReason} of why
+ * the argument couldn't be resolved. Failures hold no value and no stack trace, so they can be shared.
+ *
+ * @param <T> resolved type
+ */
+public final class ResolveResult<T> {
+
+    private static final ResolveResult<?> NOT_TYPED = new ResolveResult<>(null, FailReason.ARGUMENT_NOT_TYPED);
+    private static final ResolveResult<?> NOT_TYPE = new ResolveResult<>(null, FailReason.ARGUMENT_PARSED_NOT_TYPE);
+    private static final ResolveResult<?> PARSED_NULL = new ResolveResult<>(null, FailReason.ARGUMENT_PARSED_NULL);
+
+    /**
+     * Creates a successful result holding the specified value.
+     *
+     * @param value resolved value
+     * @param <T>   resolved type
+     * @return success result
+     */
+    @NotNull
+    public static <T> ResolveResult<T> success(@NotNull T value) {
+        return new ResolveResult<>(Objects.requireNonNull(value, "value"), FailReason.NO_FAIL_REASON);
+    }
+
+    /**
+     * Returns a failed result with the specified {@link FailReason}.
+     *
+     * @param failReason why resolving failed, can't be {@link FailReason#NO_FAIL_REASON}
+     * @param <T>        resolved type
+     * @return failure result
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <T> ResolveResult<T> failure(@NotNull FailReason failReason) {
+        Objects.requireNonNull(failReason, "failReason");
+        switch (failReason) {
+            case ARGUMENT_NOT_TYPED:
+                return (ResolveResult<T>) NOT_TYPED;
+            case ARGUMENT_PARSED_NOT_TYPE:
+                return (ResolveResult<T>) NOT_TYPE;
+            case ARGUMENT_PARSED_NULL:
+                return (ResolveResult<T>) PARSED_NULL;
+            default:
+                throw new IllegalArgumentException("A failure needs a fail reason");
+        }
+    }
+
+    /**
+     * Returns a failed result, saying that the argument is not of the type we want it to be.
+     *
+     * @param <T> resolved type
+     * @return failure result
+     */
+    @NotNull
+    public static <T> ResolveResult<T> notType() {
+        return failure(FailReason.ARGUMENT_PARSED_NOT_TYPE);
+    }
+
+    private final T value;
+    private final FailReason failReason;
+
+    private ResolveResult(T value, FailReason failReason) {
+        this.value = value;
+        this.failReason = failReason;
+    }
+
+    /**
+     * Returns whenever the argument was resolved.
+     *
+     * @return <code>true</code> if resolved, <code>false</code> otherwise
+     */
+    public boolean isSuccess() {
+        return failReason == FailReason.NO_FAIL_REASON;
+    }
+
+    /**
+     * Returns the resolved value.
+     *
+     * @return value, or null if this is a failure
+     */
+    @Nullable
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the {@link FailReason} of this result.
+     *
+     * @return fail reason, {@link FailReason#NO_FAIL_REASON} if successful
+     */
+    @NotNull
+    public FailReason getFailReason() {
+        return failReason;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mrivanplays.jdcf.args;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Represents a {@link ArgumentResolver} which reports failures through a {@link ResolveResult} instead of throwing.
+ * This is cheaper for arguments which are often not of the wanted type, as no exception has to be created.
+ * {@link CommandArguments#next(ArgumentResolver)} prefers {@link #tryResolve(ArgumentResolverContext)} when given such
+ * resolver.
+ *
+ * <p>This is a functional interface whose abstract method is {@link #tryResolve(ArgumentResolverContext)}
+ *
+ * @param <T> resolved to type
+ */
+@FunctionalInterface
+public interface ResultArgumentResolver<T> extends ArgumentResolver<T> {
+
+    /**
+     * Resolves the input argument into the type this resolver resolves. This method should not throw.
+     *
+     * @param context context containing data about the argument
+     * @return result holding the resolved argument or the reason why it failed
+     */
+    @NotNull
+    ResolveResult<T> tryResolve(@NotNull ArgumentResolverContext context);
+
+    /**
+     * Resolves the argument through {@link #tryResolve(ArgumentResolverContext)}, throwing a {@link
+     * IllegalArgumentException} if the argument is not of the type.
+     *
+     * @param context context containing data about the argument
+     * @return a resolved argument, or null.
+     */
+    @Override
+    @Nullable
+    default T resolve(@NotNull ArgumentResolverContext context) throws Exception {
+        ResolveResult<T> result = tryResolve(context);
+        if (result.isSuccess() || result.getFailReason() == FailReason.ARGUMENT_PARSED_NULL) {
+            return result.getValue();
+        }
+        throw new IllegalArgumentException("Argument '" + context.getArgument() + "' failed with " + result.getFailReason());
+    }
+}
@@ -0,0 +1,61 @@
+package com.mrivanplays.jdcf.args;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A list over {@link MessageTokens}, creating token strings only when they're retrieved.
+ */
+final class TokenList extends AbstractList<String> implements RandomAccess {
+
+    private final MessageTokens tokens;
+    private final int[] order;
+    private String[] created;
+    private int size;
+
+    TokenList(MessageTokens tokens, int fromIndex) {
+        this.tokens = tokens;
+        this.size = tokens.size() - fromIndex;
+        this.order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = fromIndex + i;
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        checkIndex(index);
+        if (created == null) {
+            created = new String[order.length];
+        }
+        String token = created[index];
+        if (token == null) {
+            token = tokens.get(order[index]);
+            created[index] = token;
+        }
+        return token;
+    }
+
+    @Override
+    public String remove(int index) {
+        String token = get(index);
+        int moved = size - index - 1;
+        System.arraycopy(order, index + 1, order, index, moved);
+        System.arraycopy(created, index + 1, created, index, moved);
+        size--;
+        created[size] = null;
+        modCount++;
+        return token;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+}
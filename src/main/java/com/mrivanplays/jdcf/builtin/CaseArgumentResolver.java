@@ -2,9 +2,10 @@ package com.mrivanplays.jdcf.builtin;
 
 import com.mrivanplays.jdcf.args.ArgumentResolver;
 import com.mrivanplays.jdcf.args.ArgumentResolverContext;
+import com.mrivanplays.jdcf.args.ResolveResult;
+import com.mrivanplays.jdcf.args.ResultArgumentResolver;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 
@@ -15,7 +16,7 @@ import java.util.Map;
  *
  * @param <T> argument to resolve to
  */
-public final class CaseArgumentResolver<T> implements ArgumentResolver<T> {
+public final class CaseArgumentResolver<T> implements ResultArgumentResolver<T> {
 
     private Map<String, T> cases;
 
@@ -26,14 +27,10 @@ public final class CaseArgumentResolver<T> implements ArgumentResolver<T> {
     /**
      * {@inheritDoc}
      */
-    @Nullable
+    @NotNull
     @Override
-    public T resolve(@NotNull ArgumentResolverContext context) throws Exception {
+    public ResolveResult<T> tryResolve(@NotNull ArgumentResolverContext context) {
         T t = cases.get(context.getArgument());
-        if (t == null) {
-            throw new IllegalArgumentException();
-        } else {
-            return t;
-        }
+        return t == null ? ResolveResult.notType() : ResolveResult.success(t);
     }
 }
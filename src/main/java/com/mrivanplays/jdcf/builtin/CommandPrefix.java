@@ -7,8 +7,8 @@ import com.mrivanplays.jdcf.args.FailReason;
 import com.mrivanplays.jdcf.data.CommandAliases;
 import com.mrivanplays.jdcf.data.CommandDescription;
 import com.mrivanplays.jdcf.data.CommandUsage;
-import com.mrivanplays.jdcf.data.MarkGuildOnly;
 import com.mrivanplays.jdcf.settings.CommandSettings;
+import com.mrivanplays.jdcf.settings.prefix.UserPrefixes;
 import com.mrivanplays.jdcf.translation.Translations;
 import com.mrivanplays.jdcf.util.Utils;
 
@@ -17,12 +17,10 @@ import net.dv8tion.jda.api.Permission;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.TimeUnit;
 
 @CommandDescription("Performs an action for the bot's command prefix, depending on what arguments are being specified.")
 @CommandUsage("prefix (set [new prefix])")
 @CommandAliases("prefix")
-@MarkGuildOnly
 public class CommandPrefix extends Command {
 
     @Override
@@ -34,28 +32,36 @@ public class CommandPrefix extends Command {
             context.getChannel().sendMessage(errorEmbed.build()).queue();
             return true;
         }
-        Translations translations = settings.getTranslations();
+        Translations translations = settings.getTranslations(context.getGuild());
         args.nextString().ifPresent(subCommand -> {
             if (subCommand.equalsIgnoreCase("set")) {
-                if (!context.getMember().hasPermission(Permission.ADMINISTRATOR)) {
+                // in DMs the prefix belongs to the user, so anyone may change it
+                if (context.wasExecutedInGuild() && !context.getMember().hasPermission(Permission.ADMINISTRATOR)) {
                     context.getChannel().sendMessage(Utils.setAuthor(settings.getNoPermissionEmbed(), context.getAuthor()).build())
-                            .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                    context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                            .queue(context.getCommandManagerCreator().getMessageDeleteScheduler()::deleteLater);
+                    context.getCommandManagerCreator().getMessageDeleteScheduler().deleteLater(context.getMessage());
+                    return;
+                }
+                if (!context.wasExecutedInGuild() && !settings.getPrefixHandler().isUserPrefixSupported()) {
+                    context.getChannel().sendMessage(Utils.setAuthor(settings.getErrorEmbed(), context.getAuthor())
+                            .setDescription(translations.getTranslation("command_guild_only", context.getAlias())).build())
+                            .queue(context.getCommandManagerCreator().getMessageDeleteScheduler()::deleteLater);
                     return;
                 }
                 args.nextString().ifPresent(prefix -> {
-                    context.getCommandManagerCreator()
-                            .getSettings()
-                            .getPrefixHandler()
-                            .setGuildPrefix(prefix, context.getGuild().getIdLong());
+                    if (context.wasExecutedInGuild()) {
+                        settings.getPrefixHandler().setGuildPrefix(prefix, context.getGuild().getIdLong());
+                    } else if (!setUserPrefix(context, settings, translations, prefix)) {
+                        return;
+                    }
                     context.getChannel().sendMessage(Utils.setAuthor(settings.getSuccessEmbed(), context.getAuthor())
                             .setDescription(translations.getTranslation("prefix_changed", prefix)).build()).queue();
                 }).orElse(failReason -> {
                     if (failReason == FailReason.ARGUMENT_NOT_TYPED) {
                         context.getChannel().sendMessage(Utils.setAuthor(settings.getErrorEmbed(), context.getAuthor())
                                 .setDescription(translations.getTranslation("specify_prefix")).build())
-                                .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                        context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                                .queue(context.getCommandManagerCreator().getMessageDeleteScheduler()::deleteLater);
+                        context.getCommandManagerCreator().getMessageDeleteScheduler().deleteLater(context.getMessage());
                     }
                 });
             }
@@ -63,9 +69,27 @@ public class CommandPrefix extends Command {
             if (failReason == FailReason.ARGUMENT_NOT_TYPED) {
                 context.getChannel().sendMessage(Utils.setAuthor(settings.getPrefixCommandEmbed(), context.getAuthor())
                         .setDescription(translations.getTranslation("prefix_is",
-                                settings.getPrefixHandler().getPrefix(context.getGuild().getIdLong()))).build()).queue();
+                                context.getCommandManagerCreator().getPrefix(context.getGuild(), context.getAuthor()))).build()).queue();
             }
         });
         return true;
     }
+
+    private boolean setUserPrefix(CommandExecutionContext context, CommandSettings settings, Translations translations, String prefix) {
+        String error;
+        if (!UserPrefixes.isValidPrefix(prefix)) {
+            error = translations.getTranslation("invalid_user_prefix", UserPrefixes.MAX_PREFIX_LENGTH);
+        } else {
+            try {
+                settings.getPrefixHandler().setUserPrefix(prefix, context.getAuthor().getIdLong());
+                return true;
+            } catch (IllegalArgumentException | UnsupportedOperationException e) {
+                error = translations.getTranslation("user_prefix_rejected");
+            }
+        }
+        context.getChannel().sendMessage(Utils.setAuthor(settings.getErrorEmbed(), context.getAuthor())
+                .setDescription(error).build())
+                .queue(context.getCommandManagerCreator().getMessageDeleteScheduler()::deleteLater);
+        return false;
+    }
 }
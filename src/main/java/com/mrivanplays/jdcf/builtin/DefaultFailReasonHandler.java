@@ -13,7 +13,6 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 /**
@@ -29,20 +28,15 @@ public class DefaultFailReasonHandler implements FailReasonHandler {
     public void handleFailReason(@NotNull CommandExecutionContext context, @NotNull FailReason failReason, @Nullable String argument) {
         CommandData commandData = context.getCommandData();
         CommandSettings settings = context.getCommandManagerCreator().getSettings();
-        Translations translations = settings.getTranslations();
+        Translations translations = settings.getTranslations(context.getGuild());
         Supplier<EmbedBuilder> errorEmbedSupplier = settings.getErrorEmbed();
         if (commandData.getUsage() != null) {
-            String prefix;
-            if (context.getGuild() != null) {
-                prefix = settings.getPrefixHandler().getPrefix(context.getGuild().getIdLong());
-            } else {
-                prefix = settings.getPrefixHandler().getPrefix(context.getAuthor());
-            }
+            String prefix = context.getCommandManagerCreator().getPrefix(context.getGuild(), context.getAuthor());
             String usage = prefix + commandData.getUsage();
             EmbedBuilder embed = Utils.setAuthor(errorEmbedSupplier, context.getAuthor())
                     .setDescription(translations.getTranslation("incorrect_usage", usage));
-            context.getChannel().sendMessage(embed.build()).queue(msg -> msg.delete().queueAfter(15, TimeUnit.SECONDS));
-            context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+            context.getChannel().sendMessage(embed.build()).queue(context.getCommandManagerCreator().getMessageDeleteScheduler()::deleteLater);
+            context.getCommandManagerCreator().getMessageDeleteScheduler().deleteLater(context.getMessage());
         }
     }
 }
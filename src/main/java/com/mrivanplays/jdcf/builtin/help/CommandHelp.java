@@ -17,27 +17,20 @@ import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.entities.MessageEmbed;
-import net.dv8tion.jda.api.entities.MessageReaction.ReactionEmote;
-import net.dv8tion.jda.api.entities.User;
-import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @CommandAliases("help")
 public class CommandHelp extends Command {
 
-    private final EventWaiter eventWaiter;
-    private final String arrowRight = "\u27A1";
-    private final String arrowLeft = "\u2B05";
-    private final Map<Long, Integer> currentPageMap = new HashMap<>();
+    private final HelpPageCache pageCache = new HelpPageCache(64);
+    private final HelpSessions sessions;
 
     public CommandHelp(EventWaiter eventWaiter) {
-        this.eventWaiter = eventWaiter;
+        this.sessions = new HelpSessions(eventWaiter, 256, EventWaiter.DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES, System::nanoTime);
     }
 
     @Override
@@ -50,103 +43,33 @@ public class CommandHelp extends Command {
             context.getChannel().sendMessage(embed.build()).queue();
             return true;
         }
-        Translations translations = settings.getTranslations();
+        Translations translations = settings.getTranslations(context.getGuild());
         if (context.isFromDispatcher()) {
             throw new UnsupportedOperationException(translations.getTranslation("help_not_executed"));
         }
-        String pageName = translations.getTranslation("help_page_specify").split(" ")[0];
-        User author = context.getAuthor();
         MessageChannel channel = context.getChannel();
-        HelpPaginator paginator = new HelpPaginator(commandManager.getRegisteredCommands(), settings, context);
+        HelpPaginator paginator = new HelpPaginator(commandManager.getRegisteredCommands(), settings, context, pageCache);
         args.nextInt().ifPresent(pageNumber -> {
             MessageEmbed page = paginator.getPage(pageNumber).build();
             if (page.getTitle().equalsIgnoreCase(settings.getErrorEmbed().get().build().getTitle())) {
-                channel.sendMessage(page).queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                channel.sendMessage(page).queue(commandManager.getMessageDeleteScheduler()::deleteLater);
+                commandManager.getMessageDeleteScheduler().deleteLater(context.getMessage());
                 return;
             }
-            channel.sendMessage(page).queue(message -> {
-                if (!context.wasExecutedInGuild()) {
-                    return;
-                }
-                if (!message.getEmbeds().isEmpty()) {
-                    for (MessageEmbed embed : message.getEmbeds()) {
-                        if (embed.getDescription() != null && embed.getDescription().contains(pageName)) {
-                            if (paginator.hasNext(pageNumber)) {
-                                if (pageNumber != 1) {
-                                    message.addReaction(arrowLeft).queue();
-                                }
-                                message.addReaction(arrowRight).queue();
-                                eventWaiter.waitForEvent(MessageReactionAddEvent.class, event -> {
-                                    ReactionEmote emote = event.getReactionEmote();
-                                    if (event.getMessageIdLong() == message.getIdLong() && (!event.getUser().isBot() && !event.getUser().getId().equalsIgnoreCase(author.getId()))) {
-                                        message.removeReaction(emote.getEmoji(), event.getUser()).queue();
-                                        return false;
-                                    }
-                                    return (!event.getUser().isBot() && event.getMessageIdLong() == message.getIdLong()
-                                            && !emote.isEmote())
-                                            && (arrowLeft.equals(emote.getName()) || arrowRight.equals(emote.getName()));
-                                }, event -> {
-                                    ReactionEmote emote = event.getReactionEmote();
-                                    if (emote.getName().equals(arrowLeft)) {
-                                        handleAction(message, author, true, paginator, pageNumber, author.getIdLong());
-                                    } else {
-                                        handleAction(message, author, false, paginator, pageNumber, author.getIdLong());
-                                    }
-                                }, () -> message.clearReactions().queue());
-                            } else {
-                                if (pageNumber != 1) {
-                                    message.addReaction(arrowLeft).queue();
-                                    eventWaiter.waitForEvent(MessageReactionAddEvent.class, event -> {
-                                        ReactionEmote emote = event.getReactionEmote();
-                                        if (event.getMessageIdLong() == message.getIdLong() && (!event.getUser().isBot() && !event.getUser().getId().equalsIgnoreCase(author.getId()))) {
-                                            message.removeReaction(emote.getEmoji(), event.getUser()).queue();
-                                            return false;
-                                        }
-                                        return (!event.getUser().isBot() && event.getMessageIdLong() == message.getIdLong()
-                                                && !emote.isEmote())
-                                                && (arrowLeft.equals(emote.getName()));
-                                    }, event -> {
-                                        handleAction(message, author, true, paginator, pageNumber, author.getIdLong());
-                                    }, () -> message.clearReactions().queue());
-                                }
-                            }
-                        }
-                    }
-                }
-            });
+            channel.sendMessage(page).queue(message -> openSession(context, message, paginator, pageNumber));
         }).orElse((failReason, parsed) -> {
             if (failReason == FailReason.ARGUMENT_NOT_TYPED) {
-                channel.sendMessage(paginator.getPage(1).build()).queue(message -> {
-                    if (!context.wasExecutedInGuild()) {
-                        return;
-                    }
-                    if (paginator.hasNext(1)) {
-                        message.addReaction(arrowRight).queue();
-                        eventWaiter.waitForEvent(MessageReactionAddEvent.class, event -> {
-                            ReactionEmote emote = event.getReactionEmote();
-                            if (event.getMessageIdLong() == message.getIdLong() && (!event.getUser().isBot() && !event.getUser().getId().equalsIgnoreCase(author.getId()))) {
-                                message.removeReaction(emote.getEmoji(), event.getUser()).queue();
-                                return false;
-                            }
-                            return (!event.getUser().isBot() && event.getMessageIdLong() == message.getIdLong()
-                                    && !emote.isEmote())
-                                    && (arrowRight.equals(emote.getName()));
-                        }, event -> {
-                            handleAction(message, author, false, paginator, 1, author.getIdLong());
-                        }, () -> message.clearReactions().queue());
-                    }
-                });
+                channel.sendMessage(paginator.getPage(1).build()).queue(message -> openSession(context, message, paginator, 1));
                 return;
             }
             if (failReason == FailReason.ARGUMENT_PARSED_NOT_TYPE) {
                 RegisteredCommand command = commandManager.getCommand(parsed).orElse(null);
-                String prefix = settings.getPrefixHandler().getPrefix(context.getGuild().getIdLong());
+                String prefix = commandManager.getPrefix(context.getGuild(), context.getAuthor());
                 if (command == null) {
                     channel.sendMessage(Utils.setAuthor(settings.getErrorEmbed(), context.getAuthor())
                             .setDescription(translations.getTranslation("help_invalid_command", prefix)).build())
-                            .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                    context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                            .queue(commandManager.getMessageDeleteScheduler()::deleteLater);
+                    commandManager.getMessageDeleteScheduler().deleteLater(context.getMessage());
                     return;
                 }
                 PermissionCheckContext permissionCheck = new PermissionCheckContext(
@@ -154,8 +77,8 @@ public class CommandHelp extends Command {
                 );
                 if (!command.hasPermission(permissionCheck)) {
                     context.getChannel().sendMessage(Utils.setAuthor(settings.getNoPermissionEmbed(), context.getAuthor()).build())
-                            .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                    context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                            .queue(commandManager.getMessageDeleteScheduler()::deleteLater);
+                    commandManager.getMessageDeleteScheduler().deleteLater(context.getMessage());
                     return;
                 }
                 if (command.getUsage() == null || command.getDescription() == null) {
@@ -165,89 +88,31 @@ public class CommandHelp extends Command {
                     }
                     channel.sendMessage(Utils.setAuthor(settings.getErrorEmbed(), context.getAuthor())
                             .setDescription(translations.getTranslation("help_no_data")).build())
-                            .queue(message -> message.delete().queueAfter(15, TimeUnit.SECONDS));
-                    context.getMessage().delete().queueAfter(15, TimeUnit.SECONDS);
+                            .queue(commandManager.getMessageDeleteScheduler()::deleteLater);
+                    commandManager.getMessageDeleteScheduler().deleteLater(context.getMessage());
                     return;
                 }
                 EmbedBuilder helpCommandEmbed = Utils.setAuthor(settings.getHelpCommandEmbed(), context.getAuthor());
-                helpCommandEmbed.addField(getKeyword(settings, "usage"), "`" + prefix + command.getUsage() + "`", true);
-                helpCommandEmbed.addField(getKeyword(settings, "description"), command.getDescription(), true);
+                helpCommandEmbed.addField(getKeyword(translations, "usage"), "`" + prefix + command.getUsage() + "`", true);
+                helpCommandEmbed.addField(getKeyword(translations, "description"), command.getDescription(), true);
                 String[] names = command.getAliases();
                 String aliasesInlined = String.join(", ", Arrays.copyOfRange(names, 1, names.length));
-                helpCommandEmbed.addField(getKeyword(settings, "aliases"), String.join(", ", aliasesInlined), true);
+                helpCommandEmbed.addField(getKeyword(translations, "aliases"), String.join(", ", aliasesInlined), true);
                 channel.sendMessage(helpCommandEmbed.build()).queue();
             }
         });
-        System.gc();
         return true;
     }
 
-    private String getKeyword(CommandSettings settings, String keyword) {
-        return settings.getTranslations().getTranslation("help_" + keyword + "_keyword");
+    private String getKeyword(Translations translations, String keyword) {
+        return translations.getTranslation("help_" + keyword + "_keyword");
     }
 
-    private void handleAction(Message message, User author, boolean isArrowLeft, HelpPaginator paginator, int currentPage, long userId) {
-        message.clearReactions().queue();
-        if (isArrowLeft) {
-            int page = currentPage - 1;
-            message.editMessage(paginator.getPage(page).build()).queue();
-            if (currentPageMap.containsKey(userId)) {
-                currentPageMap.replace(userId, page);
-            } else {
-                currentPageMap.put(userId, page);
-            }
-            if (page != 1) {
-                message.addReaction(arrowLeft).queue();
-            }
-            if (paginator.hasNext(page)) {
-                message.addReaction(arrowRight).queue();
-            }
-            eventWaiter.waitForEvent(MessageReactionAddEvent.class, event -> {
-                ReactionEmote emote = event.getReactionEmote();
-                if (event.getMessageIdLong() == message.getIdLong() && (!event.getUser().isBot() && !event.getUser().getId().equalsIgnoreCase(author.getId()))) {
-                    message.removeReaction(emote.getEmoji(), event.getUser()).queue();
-                    return false;
-                }
-                return (!event.getUser().isBot() && event.getMessageIdLong() == message.getIdLong()
-                        && !emote.isEmote())
-                        && (arrowLeft.equals(emote.getName()) || arrowRight.equals(emote.getName()));
-            }, event -> {
-                ReactionEmote emote = event.getReactionEmote();
-                if (emote.getName().equals(arrowLeft)) {
-                    handleAction(message, author, true, paginator, currentPageMap.get(userId), userId);
-                } else {
-                    handleAction(message, author, false, paginator, currentPageMap.get(userId), userId);
-                }
-            }, () -> message.clearReactions().queue());
-        } else {
-            int page = currentPage + 1;
-            if (currentPageMap.containsKey(userId)) {
-                currentPageMap.replace(userId, page);
-            } else {
-                currentPageMap.put(userId, page);
-            }
-            message.editMessage(paginator.getPage(page).build()).queue();
-            message.addReaction(arrowLeft).queue();
-            if (paginator.hasNext(page)) {
-                message.addReaction(arrowRight).queue();
-            }
-            eventWaiter.waitForEvent(MessageReactionAddEvent.class, event -> {
-                ReactionEmote emote = event.getReactionEmote();
-                if (event.getMessageIdLong() == message.getIdLong() && (!event.getUser().isBot() && !event.getUser().getId().equalsIgnoreCase(author.getId()))) {
-                    message.removeReaction(emote.getEmoji(), event.getUser()).queue();
-                    return false;
-                }
-                return (!event.getUser().isBot() && event.getMessageIdLong() == message.getIdLong()
-                        && !emote.isEmote())
-                        && (arrowLeft.equals(emote.getName()) || arrowRight.equals(emote.getName()));
-            }, event -> {
-                ReactionEmote emote = event.getReactionEmote();
-                if (emote.getName().equals(arrowLeft)) {
-                    handleAction(message, author, true, paginator, (currentPageMap.get(userId)), userId);
-                } else {
-                    handleAction(message, author, false, paginator, (currentPageMap.get(userId)), userId);
-                }
-            }, () -> message.clearReactions().queue());
+    private void openSession(CommandExecutionContext context, Message message, HelpPaginator paginator, int page) {
+        // reactions can't be removed in DMs, so there is no paging there
+        if (!context.wasExecutedInGuild() || (page == 1 && !paginator.hasNext(page))) {
+            return;
         }
+        sessions.open(message, context.getAuthor().getIdLong(), paginator, page);
     }
 }
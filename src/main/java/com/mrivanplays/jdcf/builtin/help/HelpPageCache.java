@@ -0,0 +1,144 @@
+package com.mrivanplays.jdcf.builtin.help;
+
+import com.mrivanplays.jdcf.RegisteredCommand;
+import com.mrivanplays.jdcf.translation.Translations;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of rendered help pages. Pages are keyed by the prefix, the language and the commands the caller can
+ * see, and are rendered only when someone asks for them.
+ */
+class HelpPageCache {
+
+    private final int maxEntries;
+    private final Map<Key, HelpPages> cache;
+    private int commandCount = -1;
+
+    HelpPageCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<Key, HelpPages>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, HelpPages> eldest) {
+                return size() > HelpPageCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the pages for the specified visible commands, creating them if there are none cached.
+     *
+     * @param registeredCount count of all registered commands, the cache is dropped when it changes
+     */
+    synchronized HelpPages get(int registeredCount, String prefix, Translations translations,
+                               List<RegisteredCommand> visible, int pageCount, int pageSize) {
+        if (registeredCount != commandCount) {
+            // pages of commands which are gone would never be asked for again
+            cache.clear();
+            commandCount = registeredCount;
+        }
+        Key key = new Key(prefix, translations.getLanguage(), translations.getVersion(),
+                visible.toArray(new RegisteredCommand[0]), pageSize);
+        return cache.computeIfAbsent(key, k -> new HelpPages(prefix, translations, k.commands, pageCount, pageSize));
+    }
+
+    synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * The rendered pages of a single key.
+     */
+    static final class HelpPages {
+
+        private final String prefix;
+        private final Translations translations;
+        private final RegisteredCommand[] commands;
+        private final String[] descriptions;
+        private final int pageSize;
+
+        private HelpPages(String prefix, Translations translations, RegisteredCommand[] commands, int pageCount, int pageSize) {
+            this.prefix = prefix;
+            this.translations = translations;
+            this.commands = commands;
+            this.descriptions = new String[pageCount];
+            this.pageSize = pageSize;
+        }
+
+        int getPageCount() {
+            return descriptions.length;
+        }
+
+        /**
+         * Returns the description of the specified page, rendering it on first use.
+         *
+         * @param page page number, starting from 1
+         */
+        synchronized String getDescription(int page) {
+            String description = descriptions[page - 1];
+            if (description == null) {
+                StringBuilder builder = new StringBuilder(translations.getTranslation("help_page_specify", page, descriptions.length))
+                        .append("\n").append("\n");
+                int end = Math.min(page * pageSize, commands.length);
+                for (int i = (page - 1) * pageSize; i < end; i++) {
+                    builder.append("`")
+                            .append(prefix)
+                            .append(commands[i].getUsage())
+                            .append("` - ")
+                            .append(commands[i].getDescription())
+                            .append("\n");
+                }
+                description = builder.toString();
+                descriptions[page - 1] = description;
+            }
+            return description;
+        }
+    }
+
+    private static final class Key {
+
+        private final String prefix;
+        private final String language;
+        private final long translationsVersion;
+        private final RegisteredCommand[] commands;
+        private final int pageSize;
+        private final int hash;
+
+        Key(String prefix, String language, long translationsVersion, RegisteredCommand[] commands, int pageSize) {
+            this.prefix = prefix;
+            this.language = language;
+            // pages rendered before the translations were reloaded are never asked for again
+            this.translationsVersion = translationsVersion;
+            this.commands = commands;
+            this.pageSize = pageSize;
+            int hash = prefix.hashCode();
+            hash = 31 * hash + language.hashCode();
+            hash = 31 * hash + Long.hashCode(translationsVersion);
+            // commands have no equals, so identity it is
+            hash = 31 * hash + Arrays.hashCode(commands);
+            this.hash = 31 * hash + pageSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return pageSize == other.pageSize && translationsVersion == other.translationsVersion
+                    && prefix.equals(other.prefix) && language.equals(other.language)
+                    && Arrays.equals(commands, other.commands);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -12,90 +12,77 @@ import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 class HelpPaginator {
 
-    private final List<EmbedBuilder> pages;
+    private final List<RegisteredCommand> commands;
+    private final CommandSettings settings;
+    private final CommandExecutionContext context;
+    private final HelpPageCache cache;
     private final Supplier<EmbedBuilder> errorEmbed;
     private final Translations translations;
+    private HelpPageCache.HelpPages pages;
 
-    public HelpPaginator(List<RegisteredCommand> commands, CommandSettings settings, CommandExecutionContext context) {
-        this.translations = settings.getTranslations();
+    public HelpPaginator(List<RegisteredCommand> commands, CommandSettings settings, CommandExecutionContext context, HelpPageCache cache) {
+        this.commands = commands;
+        this.settings = settings;
+        this.context = context;
+        this.cache = cache;
+        this.translations = settings.getTranslations(context.getGuild());
         this.errorEmbed = settings.getErrorEmbed();
-        String prefix;
+    }
+
+    // the commands are filtered only when a page is asked for, the pages themselves come from the cache
+    private HelpPageCache.HelpPages pages() {
+        if (pages != null) {
+            return pages;
+        }
         Guild guild;
         if (context.wasExecutedInGuild()) {
-            prefix = settings.getPrefixHandler().getPrefix(context.getGuild().getIdLong());
             guild = context.getGuild();
         } else {
-            prefix = settings.getPrefixHandler().getPrefix(context.getAuthor());
-            guild = context.getAuthor().getMutualGuilds().get(0);
+            guild = context.getCommandManagerCreator().getDirectMessageGuild(context.getAuthor());
         }
-        Member member = guild.getMember(context.getAuthor());
-        PermissionCheckContext permissionCheck = new PermissionCheckContext(context.getJda(), context.getAuthor(), guild, member, context.getAlias());
-        if (commands.size() <= settings.getCommandsPerHelpPage()) {
-            List<RegisteredCommand> page = commands
-                    .stream()
-                    .filter(cmd ->
-                            cmd.getDescription() != null & cmd.getUsage() != null && cmd.hasPermission(permissionCheck))
-                    .collect(Collectors.toList());
-            EmbedBuilder embed = Utils.setAuthor(settings.getHelpCommandEmbed(), context.getAuthor());
-            StringBuilder commandDescription = new StringBuilder();
-            for (RegisteredCommand in : page) {
-                commandDescription.append("`")
-                        .append(prefix)
-                        .append(in.getUsage())
-                        .append("` - ")
-                        .append(in.getDescription())
-                        .append("\n");
+        String prefix = context.getCommandManagerCreator().getPrefix(context.getGuild(), context.getAuthor());
+        Member member = guild != null ? guild.getMember(context.getAuthor()) : null;
+        // permission checks may rely on a guild and a member, so without them only commands usable in DMs are shown
+        PermissionCheckContext permissionCheck = member != null
+                ? new PermissionCheckContext(context.getJda(), context.getAuthor(), guild, member, context.getAlias())
+                : null;
+        List<RegisteredCommand> visible = new ArrayList<>();
+        for (RegisteredCommand cmd : commands) {
+            if (cmd.getDescription() == null || cmd.getUsage() == null) {
+                continue;
             }
-            this.pages = Collections.singletonList(embed.setDescription(
-                    translations.getTranslation("help_page_specify", 1, 1)
-                            + "\n" + "\n" + commandDescription.toString()));
-            return;
-        }
-        List<List<RegisteredCommand>> filteredPages =
-                Utils.getPages(
-                        commands.stream()
-                                .filter(cmd ->
-                                        cmd.getDescription() != null && cmd.getUsage() != null && cmd.hasPermission(permissionCheck))
-                                .collect(Collectors.toList()),
-                        settings.getCommandsPerHelpPage()
-                );
-        List<EmbedBuilder> pages = new ArrayList<>();
-        for (int i = 0; i < filteredPages.size(); i++) {
-            List<RegisteredCommand> page = filteredPages.get(i);
-            EmbedBuilder embed = Utils.setAuthor(settings.getHelpCommandEmbed(), context.getAuthor());
-            StringBuilder commandDescription = new StringBuilder();
-            for (RegisteredCommand in : page) {
-                commandDescription.append("`")
-                        .append(prefix)
-                        .append(in.getUsage())
-                        .append("` - ")
-                        .append(in.getDescription())
-                        .append("\n");
+            if (permissionCheck != null ? cmd.hasPermission(permissionCheck) : !cmd.isGuildOnly()) {
+                visible.add(cmd);
             }
-            pages.add(embed.setDescription(
-                    translations.getTranslation("help_page_specify", (i + 1), filteredPages.size())
-                            + "\n" + "\n" + commandDescription.toString()
-            ));
         }
-        this.pages = pages;
+        int perPage = settings.getCommandsPerHelpPage();
+        int pageSize;
+        int pageCount;
+        if (commands.size() <= perPage) {
+            pageSize = Math.max(1, visible.size());
+            pageCount = 1;
+        } else {
+            pageSize = perPage <= 0 ? Math.max(1, visible.size()) : perPage;
+            pageCount = (visible.size() + pageSize - 1) / pageSize;
+        }
+        pages = cache.get(commands.size(), prefix, translations, visible, pageCount, pageSize);
+        return pages;
     }
 
     EmbedBuilder getPage(int page) {
-        try {
-            return pages.get(page - 1);
-        } catch (IndexOutOfBoundsException e) {
+        HelpPageCache.HelpPages pages = pages();
+        if (page < 1 || page > pages.getPageCount()) {
             return errorEmbed.get().setDescription(translations.getTranslation("help_page_not_exist", page));
         }
+        return Utils.setAuthor(settings.getHelpCommandEmbed(), context.getAuthor()).setDescription(pages.getDescription(page));
     }
 
     boolean hasNext(int current) {
-        return pages.size() > current;
+        return pages().getPageCount() > current;
     }
 }
@@ -0,0 +1,140 @@
+package com.mrivanplays.jdcf.builtin.help;
+
+import com.mrivanplays.jdcf.util.EventWaiter;
+import com.mrivanplays.jdcf.util.TimerWheel;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageReaction.ReactionEmote;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded store of help messages which can be paged through, keyed by the message id. A session ends when it
+ * wasn't used for the time to live, or when it is the least recently used one and the store is full. Every session has
+ * a single reaction listener for its whole life.
+ */
+class HelpSessions {
+
+    static final String ARROW_RIGHT = "\u27A1";
+    static final String ARROW_LEFT = "\u2B05";
+
+    private final EventWaiter eventWaiter;
+    private final int maxSessions;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<Long, Session> sessions;
+
+    HelpSessions(EventWaiter eventWaiter, int maxSessions, long ttl, TimeUnit unit, LongSupplier clock) {
+        this.eventWaiter = eventWaiter;
+        this.maxSessions = maxSessions;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Opens a session for the specified help message, adding the arrow reactions to it.
+     */
+    void open(Message message, long authorId, HelpPaginator paginator, int page) {
+        Session session = new Session(message, authorId, paginator, page);
+        session.route = eventWaiter.listenForEvents(MessageReactionAddEvent.class, message.getIdLong(),
+                event -> !event.getUser().isBot(), session::onReaction);
+        message.addReaction(ARROW_LEFT).queue();
+        message.addReaction(ARROW_RIGHT).queue();
+        Session evicted = null;
+        synchronized (this) {
+            sessions.put(message.getIdLong(), session);
+            if (sessions.size() > maxSessions) {
+                Map.Entry<Long, Session> eldest = sessions.entrySet().iterator().next();
+                evicted = eldest.getValue();
+                sessions.remove(eldest.getKey());
+            }
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+        session.scheduleExpiry(ttlNanos);
+    }
+
+    synchronized int size() {
+        return sessions.size();
+    }
+
+    private synchronized boolean remove(Session session) {
+        return sessions.remove(session.message.getIdLong(), session);
+    }
+
+    private synchronized void touch(Session session) {
+        // moves the session to the most recently used end
+        sessions.get(session.message.getIdLong());
+    }
+
+    private final class Session {
+
+        private final Message message;
+        private final long authorId;
+        private final HelpPaginator paginator;
+        private int page;
+        private volatile long lastUsed;
+        private EventWaiter.WaitHandle route;
+        private volatile boolean closed;
+
+        Session(Message message, long authorId, HelpPaginator paginator, int page) {
+            this.message = message;
+            this.authorId = authorId;
+            this.paginator = paginator;
+            this.page = page;
+            this.lastUsed = clock.getAsLong();
+        }
+
+        void onReaction(MessageReactionAddEvent event) {
+            // the reaction is only a button, so it goes away whoever pressed it
+            event.getReaction().removeReaction(event.getUser()).queue();
+            if (event.getUser().getIdLong() != authorId) {
+                return;
+            }
+            ReactionEmote emote = event.getReactionEmote();
+            if (emote.isEmote()) {
+                return;
+            }
+            int newPage;
+            synchronized (this) {
+                if (ARROW_LEFT.equals(emote.getName()) && page > 1) {
+                    newPage = page - 1;
+                } else if (ARROW_RIGHT.equals(emote.getName()) && paginator.hasNext(page)) {
+                    newPage = page + 1;
+                } else {
+                    return;
+                }
+                page = newPage;
+            }
+            lastUsed = clock.getAsLong();
+            touch(this);
+            message.editMessage(paginator.getPage(newPage).build()).queue();
+        }
+
+        void scheduleExpiry(long delayNanos) {
+            eventWaiter.schedule(() -> {
+                if (closed) {
+                    return;
+                }
+                long idle = clock.getAsLong() - lastUsed;
+                if (idle < ttlNanos) {
+                    scheduleExpiry(ttlNanos - idle);
+                } else if (remove(this)) {
+                    close();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        void close() {
+            closed = true;
+            route.cancel();
+            message.clearReactions().queue();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.mrivanplays.jdcf.data;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Represents a annotation, which limits how many invocations of the {@link com.mrivanplays.jdcf.Command} annotated
+ * may run at the same time. Invocations over the limit wait in a bounded queue, or are rejected with a message if the
+ * queue is full.
+ *
+ * <h3>Usage example:</h3>
+ *
+ * <pre><code>
+ *{@literal @ConcurrencyLimit(value = 2, queue = 10)}
+ * public class ImageCommand extends Command {
+ *     // at most 2 images are generated at once, 10 more requests may wait for their turn
+ * }</code></pre>
+ *
+ * <p>Queued invocations run on the command executor.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConcurrencyLimit {
+
+    /**
+     * The maximum count of invocations running at the same time.
+     *
+     * @return permits, should be positive
+     */
+    int value();
+
+    /**
+     * The maximum count of invocations waiting for a permit. By default invocations over the limit are rejected right
+     * away.
+     *
+     * @return queue capacity
+     */
+    int queue() default 0;
+}
@@ -0,0 +1,55 @@
+package com.mrivanplays.jdcf.data;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a annotation, which limits how often the {@link com.mrivanplays.jdcf.Command} annotated can be used.
+ * Uses refill evenly over the period, so a command with 5 uses per minute gets a use back every 12 seconds. Using the
+ * command while out of uses replies with a message telling when it can be used again.
+ *
+ * <h3>Usage example:</h3>
+ *
+ * <pre><code>
+ *{@literal @Cooldown(uses = 3, per = 30, scope = CooldownScope.USER)}
+ * public class DailyCommand extends Command {
+ *     // every user can use this command 3 times per 30 seconds
+ * }</code></pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cooldown {
+
+    /**
+     * The count of uses allowed per period.
+     *
+     * @return uses, should be positive
+     */
+    int uses() default 1;
+
+    /**
+     * The period, in {@link #unit()}.
+     *
+     * @return period, should be positive
+     */
+    long per();
+
+    /**
+     * The unit of {@link #per()}.
+     *
+     * @return time unit
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * What the cooldown is counted for.
+     *
+     * @return scope
+     */
+    CooldownScope scope() default CooldownScope.USER;
+}
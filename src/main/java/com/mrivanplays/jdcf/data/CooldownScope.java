@@ -0,0 +1,23 @@
+package com.mrivanplays.jdcf.data;
+
+/**
+ * Represents what a {@link Cooldown} is counted for.
+ */
+public enum CooldownScope {
+
+    /**
+     * Every user has their own cooldown.
+     */
+    USER,
+
+    /**
+     * Every guild has its own cooldown, shared by all of its members. In DMs, every private channel is counted as a
+     * guild.
+     */
+    GUILD,
+
+    /**
+     * Every channel has its own cooldown, shared by everyone who writes in it.
+     */
+    CHANNEL
+}
@@ -0,0 +1,37 @@
+package com.mrivanplays.jdcf.data;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Represents a annotation, which overrides whenever the {@link com.mrivanplays.jdcf.Command} annotated runs on the
+ * command executor instead of the thread the message was received on. Commands which aren't annotated follow {@link
+ * com.mrivanplays.jdcf.settings.CommandSettings#isAsyncCommandExecution()}.
+ *
+ * <h3>Usage example:</h3>
+ *
+ * <pre><code>
+ *{@literal @ExecuteAsync}
+ * public class DatabaseCommand extends Command {
+ *     // this command queries a database, so it shouldn't block the event thread
+ * }</code></pre>
+ *
+ * <p>Asynchronously executed commands of the same guild are ran one after another, in the order they were sent.
+ * Commands ran on the event thread don't wait for them, so when a guild uses both kinds, a synchronous command may run
+ * before, or at the same time as, an asynchronous one sent earlier.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ExecuteAsync {
+
+    /**
+     * Whenever the command should be executed on the command executor.
+     *
+     * @return <code>true</code> to run on the command executor, <code>false</code> to run on the event thread
+     */
+    boolean value() default true;
+}
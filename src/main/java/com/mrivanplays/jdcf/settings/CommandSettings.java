@@ -3,21 +3,31 @@ package com.mrivanplays.jdcf.settings;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mrivanplays.jdcf.args.FailReasonHandler;
 import com.mrivanplays.jdcf.builtin.DefaultFailReasonHandler;
+import com.mrivanplays.jdcf.settings.language.LanguageHandler;
 import com.mrivanplays.jdcf.settings.prefix.PrefixHandler;
 import com.mrivanplays.jdcf.translation.TranslationCollector;
 import com.mrivanplays.jdcf.translation.Translations;
+import com.mrivanplays.jdcf.util.CommandExecutors;
+import com.mrivanplays.jdcf.util.Utils;
 
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.awt.Color;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
@@ -40,9 +50,20 @@ public final class CommandSettings {
     private Supplier<EmbedBuilder> successEmbed;
     private TextChannel commandExecuteChannel;
     private Translations translations;
+    private LanguageHandler languageHandler;
     private boolean logExecutedCommands;
     private boolean allowDMSCommands;
     private FailReasonHandler failReasonHandler;
+    private boolean asyncCommandExecution;
+    private volatile Executor commandExecutor;
+    private int ingressCapacity;
+    private int ingressWindow;
+    private LoadSheddingPolicy loadSheddingPolicy;
+    private long ingressTargetDelay;
+    private Consumer<Message> shedCommandListener;
+    private long autoDeleteDelay;
+    private int userGuildCacheSize;
+    private final Logger logger = LoggerFactory.getLogger(CommandSettings.class);
 
     /**
      * Returns the default settings object
@@ -71,6 +92,13 @@ public final class CommandSettings {
         settings.setLogExecutedCommands(false);
         settings.setAllowDMSCommands(true);
         settings.setFailReasonHandler(new DefaultFailReasonHandler());
+        settings.setAsyncCommandExecution(false);
+        settings.setIngressCapacity(0);
+        settings.setIngressWindow(64);
+        settings.setLoadSheddingPolicy(LoadSheddingPolicy.DROP_NEWEST);
+        settings.setIngressTargetDelay(500);
+        settings.setAutoDeleteDelay(TimeUnit.SECONDS.toMillis(15));
+        settings.setUserGuildCacheSize(10000);
         return settings;
     }
 
@@ -324,6 +352,62 @@ public final class CommandSettings {
         this.translations = requireNonNull(translations, "translations");
     }
 
+    /**
+     * Returns the translations for messages in the specified guild. Guilds which haven't chosen a language, or chose
+     * one which isn't supported, get the default {@link #getTranslations()}. This never reads a file: a language which
+     * isn't loaded yet gets loaded on the {@link #getExecutorService() executor service}, and the default translations
+     * are returned meanwhile.
+     *
+     * @param guild the guild, or null for DMs
+     * @return translations
+     */
+    @NotNull
+    public Translations getTranslations(@Nullable Guild guild) {
+        if (guild == null || languageHandler == null) {
+            return translations;
+        }
+        String language = languageHandler.getGuildLanguage(guild.getIdLong());
+        if (language == null || language.equalsIgnoreCase(translations.getLanguage())) {
+            return translations;
+        }
+        TranslationCollector collector = TranslationCollector.getInstance();
+        if (!collector.isSupported(language)) {
+            return translations;
+        }
+        Translations loaded = collector.getLoadedTranslations(language);
+        if (loaded != null) {
+            return loaded;
+        }
+        // called on the event thread, so the file is read in the background
+        collector.getTranslationsAsync(language, executorService).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Could not load the translations of language " + language, error);
+            }
+        });
+        return translations;
+    }
+
+    /**
+     * Returns the language handler, holding the language each guild has chosen.
+     *
+     * @return language handler
+     */
+    @Nullable
+    public LanguageHandler getLanguageHandler() {
+        return languageHandler;
+    }
+
+    /**
+     * Sets a new language handler. Set to null to use the default translations in every guild. There is no language
+     * handler by default, {@link LanguageHandler#defaultHandler(ObjectMapper)} can be set to keep the languages in
+     * <code>languages.json</code>.
+     *
+     * @param languageHandler new language handler
+     */
+    public void setLanguageHandler(@Nullable LanguageHandler languageHandler) {
+        this.languageHandler = languageHandler;
+    }
+
     /**
      * Should the framework log executed commands
      *
@@ -380,4 +464,211 @@ public final class CommandSettings {
     public void setFailReasonHandler(@Nullable FailReasonHandler failReasonHandler) {
         this.failReasonHandler = failReasonHandler;
     }
+
+    /**
+     * Returns whenever commands are being executed on the {@link #getCommandExecutor()} instead of the thread the
+     * message was received on. Commands may override that with {@link com.mrivanplays.jdcf.data.ExecuteAsync}.
+     *
+     * @return <code>true</code> if executed asynchronously, <code>false</code> otherwise
+     */
+    public boolean isAsyncCommandExecution() {
+        return asyncCommandExecution;
+    }
+
+    /**
+     * Sets whenever commands should be executed on the {@link #getCommandExecutor()}. Asynchronously executed commands
+     * of the same guild (or the same DM channel) are still executed one after another, in the order they were sent,
+     * while commands of different guilds are executed in parallel. Commands which opt out with {@link
+     * com.mrivanplays.jdcf.data.ExecuteAsync} run on the event thread right away, so they don't wait for them.
+     *
+     * @param asyncCommandExecution value
+     */
+    public void setAsyncCommandExecution(boolean asyncCommandExecution) {
+        this.asyncCommandExecution = asyncCommandExecution;
+    }
+
+    /**
+     * Returns the executor, asynchronously executed commands run on. Unless one is set, {@link
+     * CommandExecutors#newDefaultExecutor()}, which runs commands on virtual threads on Java 21 and newer, is created
+     * on the first call.
+     *
+     * @return command executor
+     */
+    @NotNull
+    public Executor getCommandExecutor() {
+        Executor executor = commandExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = commandExecutor;
+                if (executor == null) {
+                    executor = CommandExecutors.newDefaultExecutor();
+                    commandExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Returns whenever a command executor is set, or the default one was created already. Bots which never execute a
+     * command asynchronously never create one.
+     *
+     * @return <code>true</code> if there is a command executor, <code>false</code> otherwise
+     */
+    public boolean hasCommandExecutor() {
+        return commandExecutor != null;
+    }
+
+    /**
+     * Sets a new command executor. If it is a {@link java.util.concurrent.ExecutorService}, it gets shut down when the
+     * bot shuts down.
+     *
+     * @param commandExecutor executor
+     */
+    public void setCommandExecutor(@NotNull Executor commandExecutor) {
+        this.commandExecutor = requireNonNull(commandExecutor, "commandExecutor");
+    }
+
+    /**
+     * Returns how many asynchronously executed commands may wait to be executed. 0 means there is no limit.
+     *
+     * @return ingress capacity
+     */
+    public int getIngressCapacity() {
+        return ingressCapacity;
+    }
+
+    /**
+     * Sets how many asynchronously executed commands may wait to be executed. When more commands arrive, the {@link
+     * #getLoadSheddingPolicy()} decides which ones are shed, so the bot keeps answering the commands it can instead of
+     * falling behind all of them. 0 disables the limit.
+     *
+     * @param ingressCapacity capacity
+     */
+    public void setIngressCapacity(int ingressCapacity) {
+        Utils.checkState(ingressCapacity >= 0, "ingressCapacity cannot be negative");
+        this.ingressCapacity = ingressCapacity;
+    }
+
+    /**
+     * Returns how many commands, taken from the ingress queue, may be executing at the same time.
+     *
+     * @return ingress window
+     */
+    public int getIngressWindow() {
+        return ingressWindow;
+    }
+
+    /**
+     * Sets how many commands, taken from the ingress queue, may be executing at the same time. Used only if there is a
+     * {@link #getIngressCapacity()}.
+     *
+     * @param ingressWindow window
+     */
+    public void setIngressWindow(int ingressWindow) {
+        Utils.checkState(ingressWindow > 0, "ingressWindow should be positive");
+        this.ingressWindow = ingressWindow;
+    }
+
+    /**
+     * Returns which commands are shed when the ingress queue can't keep up.
+     *
+     * @return load shedding policy
+     */
+    @NotNull
+    public LoadSheddingPolicy getLoadSheddingPolicy() {
+        return loadSheddingPolicy;
+    }
+
+    /**
+     * Sets which commands are shed when the ingress queue can't keep up.
+     *
+     * @param loadSheddingPolicy policy
+     */
+    public void setLoadSheddingPolicy(@NotNull LoadSheddingPolicy loadSheddingPolicy) {
+        this.loadSheddingPolicy = requireNonNull(loadSheddingPolicy, "loadSheddingPolicy");
+    }
+
+    /**
+     * Returns the time, in milliseconds, commands may wait in the ingress queue before {@link
+     * LoadSheddingPolicy#CODEL} starts shedding them.
+     *
+     * @return target delay in milliseconds
+     */
+    public long getIngressTargetDelay() {
+        return ingressTargetDelay;
+    }
+
+    /**
+     * Sets the time, in milliseconds, commands may wait in the ingress queue before {@link LoadSheddingPolicy#CODEL}
+     * starts shedding them.
+     *
+     * @param ingressTargetDelay target delay in milliseconds
+     */
+    public void setIngressTargetDelay(long ingressTargetDelay) {
+        Utils.checkState(ingressTargetDelay > 0, "ingressTargetDelay should be positive");
+        this.ingressTargetDelay = ingressTargetDelay;
+    }
+
+    /**
+     * Returns the listener, called with the message of every command which was shed.
+     *
+     * @return shed command listener
+     */
+    @Nullable
+    public Consumer<Message> getShedCommandListener() {
+        return shedCommandListener;
+    }
+
+    /**
+     * Sets a listener, called with the message of every command which was shed. Useful for counting how many commands
+     * the bot couldn't keep up with.
+     *
+     * @param shedCommandListener listener
+     */
+    public void setShedCommandListener(@Nullable Consumer<Message> shedCommandListener) {
+        this.shedCommandListener = shedCommandListener;
+    }
+
+    /**
+     * Returns the time, in milliseconds, after which error replies and the messages which caused them are deleted.
+     *
+     * @return auto delete delay in milliseconds
+     */
+    public long getAutoDeleteDelay() {
+        return autoDeleteDelay;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which error replies and the messages which caused them are deleted. 0
+     * keeps them.
+     *
+     * @param autoDeleteDelay auto delete delay in milliseconds
+     * @see com.mrivanplays.jdcf.util.MessageDeleteScheduler
+     */
+    public void setAutoDeleteDelay(long autoDeleteDelay) {
+        Utils.checkState(autoDeleteDelay >= 0, "autoDeleteDelay cannot be negative");
+        this.autoDeleteDelay = autoDeleteDelay;
+    }
+
+    /**
+     * Returns how many users the guild, whose prefix and permissions apply to their DMs, is cached for.
+     *
+     * @return user guild cache size
+     */
+    public int getUserGuildCacheSize() {
+        return userGuildCacheSize;
+    }
+
+    /**
+     * Sets how many users the guild, whose prefix and permissions apply to their DMs, is cached for. Only read when a
+     * {@link com.mrivanplays.jdcf.CommandManager} is created.
+     *
+     * @param userGuildCacheSize user guild cache size
+     * @see com.mrivanplays.jdcf.util.UserGuildCache
+     */
+    public void setUserGuildCacheSize(int userGuildCacheSize) {
+        Utils.checkState(userGuildCacheSize > 0, "userGuildCacheSize must be positive");
+        this.userGuildCacheSize = userGuildCacheSize;
+    }
 }
@@ -0,0 +1,27 @@
+package com.mrivanplays.jdcf.settings;
+
+/**
+ * Represents which commands are shed when more commands arrive than the bot can execute.
+ *
+ * @see CommandSettings#setIngressCapacity(int)
+ */
+public enum LoadSheddingPolicy {
+
+    /**
+     * When the ingress queue is full, the command which just arrived is shed.
+     */
+    DROP_NEWEST,
+
+    /**
+     * When the ingress queue is full, the command which waited the longest is shed, making room for the one which just
+     * arrived.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Commands are shed by the time they waited in the ingress queue: once commands have been waiting longer than
+     * {@link CommandSettings#getIngressTargetDelay()} for a while, commands which waited longer than that are shed
+     * until the waiting time drops again. A full queue sheds the command which just arrived.
+     */
+    CODEL
+}
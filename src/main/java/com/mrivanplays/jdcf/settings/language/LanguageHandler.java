@@ -0,0 +1,82 @@
+package com.mrivanplays.jdcf.settings.language;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Represents a handler of the language each guild sees the framework's messages in. Guilds without a language of their
+ * own get the {@link com.mrivanplays.jdcf.settings.CommandSettings#getTranslations() default translations}.
+ */
+public interface LanguageHandler {
+
+    /**
+     * Default implementation of a language handler, using json file as a long term storage. The file is created on
+     * the first save.
+     *
+     * @param jsonMapper jackson object mapper
+     * @return non null default language handler
+     */
+    @NotNull
+    static LanguageHandler defaultHandler(@NotNull ObjectMapper jsonMapper) {
+        Objects.requireNonNull(jsonMapper, "jsonMapper");
+        File file = new File("languages.json");
+        Consumer<Map<Long, String>> saveFunction = saveMap -> {
+            if (saveMap.isEmpty() && !file.exists()) {
+                return;
+            }
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(jsonMapper.writer().writeValueAsString(saveMap));
+            } catch (IOException ignored) {
+            }
+        };
+        Map<Long, String> map = new ConcurrentHashMap<>();
+        if (file.exists() && file.length() != 0) {
+            try (Reader reader = new FileReader(file)) {
+                Map<Long, String> read = jsonMapper.readValue(reader, new TypeReference<HashMap<Long, String>>() {
+                });
+                if (read != null) {
+                    map.putAll(read);
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return new MapLanguageHandler(map, saveFunction);
+    }
+
+    /**
+     * Returns the language, which the specified guild has chosen.
+     *
+     * @param guildId the guild id
+     * @return guild language, or null if the guild uses the default one
+     */
+    @Nullable
+    String getGuildLanguage(long guildId);
+
+    /**
+     * Sets a new guild language.
+     *
+     * @param language the language you want to set, or null to use the default one
+     * @param guildId  the guild id for which you want to set the language
+     */
+    void setGuildLanguage(@Nullable String language, long guildId);
+
+    /**
+     * Saves the languages
+     */
+    void saveLanguages();
+}
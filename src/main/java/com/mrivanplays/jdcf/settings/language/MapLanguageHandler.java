@@ -0,0 +1,45 @@
+package com.mrivanplays.jdcf.settings.language;
+
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Represents a language handler, working with a simple map. Opens opportunities for much different long term storage
+ * types.
+ */
+public class MapLanguageHandler implements LanguageHandler {
+
+    private final Map<Long, String> languagesMap;
+    private final Consumer<Map<Long, String>> saveFunction;
+
+    public MapLanguageHandler(@NotNull Map<Long, String> languagesMap, @NotNull Consumer<Map<Long, String>> saveFunction) {
+        this.languagesMap = Objects.requireNonNull(languagesMap, "languagesMap");
+        this.saveFunction = Objects.requireNonNull(saveFunction, "saveFunction");
+    }
+
+    @Override
+    public @Nullable String getGuildLanguage(long guildId) {
+        return languagesMap.get(guildId);
+    }
+
+    @Override
+    public void setGuildLanguage(@Nullable String language, long guildId) {
+        Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
+        if (language == null) {
+            languagesMap.remove(guildId);
+        } else {
+            languagesMap.put(guildId, language);
+        }
+    }
+
+    @Override
+    public void saveLanguages() {
+        saveFunction.accept(languagesMap);
+    }
+}
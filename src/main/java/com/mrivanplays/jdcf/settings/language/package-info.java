@@ -0,0 +1,4 @@
+/**
+ * Handler of different languages per guild.
+ */
+package com.mrivanplays.jdcf.settings.language;
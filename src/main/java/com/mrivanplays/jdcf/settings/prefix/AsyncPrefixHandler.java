@@ -0,0 +1,42 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Represents a prefix store, which can't answer right away, like a database. Wrap it in a {@link CachingPrefixHandler}
+ * to use it as a {@link PrefixHandler}.
+ */
+public interface AsyncPrefixHandler {
+
+    /**
+     * Looks up the prefix, which belongs to the specified guild id.
+     *
+     * @param guildId the guild id
+     * @return a stage, completed with the guild prefix, or with null if the guild has none
+     */
+    @NotNull
+    CompletionStage<String> getGuildPrefix(long guildId);
+
+    /**
+     * Stores a new guild prefix.
+     *
+     * @param prefix  the prefix you want to set
+     * @param guildId the guild id for which you want to set the prefix
+     * @return a stage, completed when the prefix is stored
+     */
+    @NotNull
+    CompletionStage<Void> setGuildPrefix(@NotNull String prefix, long guildId);
+
+    /**
+     * Saves the prefixes. Stores, which save every change right away, should leave the default, which does nothing.
+     *
+     * @return a stage, completed when the prefixes are saved
+     */
+    @NotNull
+    default CompletionStage<Void> savePrefixes() {
+        return CompletableFuture.completedFuture(null);
+    }
+}
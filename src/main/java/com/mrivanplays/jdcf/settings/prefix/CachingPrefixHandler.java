@@ -0,0 +1,311 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Represents a prefix handler, answering from a bounded near cache in front of an {@link AsyncPrefixHandler}. A prefix
+ * older than the refresh time is still returned, while a fresh one is being loaded in the background, so a guild which
+ * keeps using the bot never waits for the store. Guilds without a prefix are cached as well. Only a prefix which isn't
+ * cached, or is older than the expire time, has to be waited for, and even then no longer than the max wait: if the
+ * store doesn't answer in time, the expired prefix is used, or the default prefix if there is none. A failed load is
+ * cached too, as is a load which took longer than the max wait, for a few seconds. While the store is down or slow,
+ * lookups use the expired or default prefix right away, instead of each waiting the max wait. User prefixes don't go through the store, they are kept in {@link
+ * UserPrefixes}, in memory only unless specified otherwise.
+ *
+ * <p>The cache is split in stripes by guild id, each its own least recently used map under its own lock, so lookups of
+ * different guilds rarely contend.
+ */
+public class CachingPrefixHandler implements PrefixHandler {
+
+    // how long a failed load is used, before the store is asked again
+    private static final long FAILURE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int MAX_STRIPES = 16;
+
+    private final AsyncPrefixHandler backend;
+    private final long refreshAfterNanos;
+    private final long expireAfterNanos;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final CacheStripe[] stripes;
+    private final Map<Long, CompletableFuture<String>> loads = new ConcurrentHashMap<>();
+    private final UserPrefixes userPrefixes;
+    private final Logger logger = LoggerFactory.getLogger(CachingPrefixHandler.class);
+    private volatile String defaultPrefix = "!";
+
+    public CachingPrefixHandler(@NotNull AsyncPrefixHandler backend) {
+        this(backend, 10000, 5, 60, TimeUnit.MINUTES, 50);
+    }
+
+    public CachingPrefixHandler(@NotNull AsyncPrefixHandler backend, int maximumSize, long refreshAfter, long expireAfter,
+                                @NotNull TimeUnit unit, long maxWaitMillis) {
+        this(backend, maximumSize, refreshAfter, expireAfter, unit, maxWaitMillis, System::nanoTime);
+    }
+
+    public CachingPrefixHandler(@NotNull AsyncPrefixHandler backend, int maximumSize, long refreshAfter, long expireAfter,
+                                @NotNull TimeUnit unit, long maxWaitMillis, @NotNull LongSupplier clock) {
+        this(backend, maximumSize, refreshAfter, expireAfter, unit, maxWaitMillis, clock, new UserPrefixes());
+    }
+
+    public CachingPrefixHandler(@NotNull AsyncPrefixHandler backend, int maximumSize, long refreshAfter, long expireAfter,
+                                @NotNull TimeUnit unit, long maxWaitMillis, @NotNull LongSupplier clock,
+                                @NotNull UserPrefixes userPrefixes) {
+        this.backend = Objects.requireNonNull(backend, "backend");
+        this.userPrefixes = Objects.requireNonNull(userPrefixes, "userPrefixes");
+        Objects.requireNonNull(unit, "unit");
+        Utils.checkState(maximumSize > 0, "maximumSize must be positive");
+        Utils.checkState(refreshAfter > 0 && refreshAfter <= expireAfter, "refreshAfter must be positive and not after expireAfter");
+        Utils.checkState(maxWaitMillis >= 0, "maxWaitMillis cannot be negative");
+        this.refreshAfterNanos = unit.toNanos(refreshAfter);
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.clock = Objects.requireNonNull(clock, "clock");
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(maximumSize));
+        this.stripes = new CacheStripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // the stripes hold the maximum size together
+            stripes[i] = new CacheStripe(maximumSize / stripeCount + (i < maximumSize % stripeCount ? 1 : 0));
+        }
+    }
+
+    @Override
+    public @NotNull String getDefaultPrefix() {
+        return defaultPrefix;
+    }
+
+    @Override
+    public void setDefaultPrefix(@NotNull String defaultPrefix) {
+        this.defaultPrefix = Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+    }
+
+    @Override
+    public @Nullable String getGuildPrefix(long guildId) {
+        CacheStripe stripe = stripe(guildId);
+        CachedPrefix cached;
+        synchronized (stripe) {
+            cached = stripe.get(guildId);
+        }
+        if (cached != null) {
+            long age = clock.getAsLong() - cached.loadedAt;
+            if (cached.failed) {
+                // the store is failing, so it isn't waited for
+                if (age >= FAILURE_RETRY_NANOS) {
+                    load(guildId);
+                }
+                return cached.prefix;
+            }
+            if (age < refreshAfterNanos) {
+                return cached.prefix;
+            }
+            if (age < expireAfterNanos) {
+                load(guildId);
+                return cached.prefix;
+            }
+        }
+        CompletableFuture<String> load = load(guildId);
+        try {
+            return load.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // failures are logged and cached by the load
+        } catch (TimeoutException e) {
+            // a late answer still ends up in the cache, until then the store isn't waited for again
+            synchronized (stripe) {
+                if (stripe.get(guildId) == cached) {
+                    stripe.put(guildId, new CachedPrefix(cached != null ? cached.prefix : null, clock.getAsLong(), true));
+                }
+            }
+        }
+        return cached != null ? cached.prefix : null;
+    }
+
+    @Override
+    public void setGuildPrefix(@NotNull String prefix, long guildId) {
+        Objects.requireNonNull(prefix, "prefix");
+        Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
+        CachedPrefix written = new CachedPrefix(prefix, clock.getAsLong(), false);
+        CacheStripe stripe = stripe(guildId);
+        synchronized (stripe) {
+            stripe.put(guildId, written);
+        }
+        CompletableFuture<Void> store;
+        try {
+            store = backend.setGuildPrefix(prefix, guildId).toCompletableFuture();
+        } catch (RuntimeException e) {
+            store = new CompletableFuture<>();
+            store.completeExceptionally(e);
+        }
+        store.whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("Could not store prefix of guild " + guildId, error);
+                // the store may still have the old prefix, so it is looked up again
+                synchronized (stripe) {
+                    stripe.remove(guildId, written);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isUserPrefixSupported() {
+        return true;
+    }
+
+    @Override
+    public @Nullable String getUserPrefix(long userId) {
+        return userPrefixes.get(userId);
+    }
+
+    @Override
+    public void setUserPrefix(@NotNull String prefix, long userId) {
+        userPrefixes.set(prefix, userId);
+    }
+
+    @Override
+    public void savePrefixes() {
+        try {
+            backend.savePrefixes().toCompletableFuture().join();
+        } catch (RuntimeException e) {
+            logger.error("Could not save prefixes", e);
+        }
+        userPrefixes.save();
+    }
+
+    /**
+     * Starts loading the prefix of the specified guild, if it isn't cached already. Useful for guilds which are about
+     * to use the bot, like ones which just got ready.
+     *
+     * @param guildId the guild id
+     */
+    public void prefetch(long guildId) {
+        CacheStripe stripe = stripe(guildId);
+        boolean cached;
+        synchronized (stripe) {
+            cached = stripe.containsKey(guildId);
+        }
+        if (!cached) {
+            load(guildId);
+        }
+    }
+
+    /**
+     * Drops the cached prefix of the specified guild, so the next lookup asks the store again.
+     *
+     * @param guildId the guild id
+     */
+    public void invalidate(long guildId) {
+        CacheStripe stripe = stripe(guildId);
+        synchronized (stripe) {
+            stripe.remove(guildId);
+        }
+    }
+
+    /**
+     * Returns the count of cached guilds, including the ones without a prefix.
+     *
+     * @return cache size
+     */
+    public int getCacheSize() {
+        int size = 0;
+        for (CacheStripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private CacheStripe stripe(long guildId) {
+        long h = guildId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h ^ (h >>> 32)) & (stripes.length - 1)];
+    }
+
+    private CompletableFuture<String> load(long guildId) {
+        CompletableFuture<String> load = loads.get(guildId);
+        if (load != null) {
+            return load;
+        }
+        CompletableFuture<String> created = new CompletableFuture<>();
+        load = loads.putIfAbsent(guildId, created);
+        if (load != null) {
+            return load;
+        }
+        long startedAt = clock.getAsLong();
+        CompletableFuture<String> lookup;
+        try {
+            lookup = backend.getGuildPrefix(guildId).toCompletableFuture();
+        } catch (RuntimeException e) {
+            lookup = new CompletableFuture<>();
+            lookup.completeExceptionally(e);
+        }
+        CacheStripe stripe = stripe(guildId);
+        lookup.whenComplete((prefix, error) -> {
+            if (error != null) {
+                logger.error("Could not load prefix of guild " + guildId, error);
+            }
+            synchronized (stripe) {
+                CachedPrefix current = stripe.get(guildId);
+                // a prefix set while loading is newer than the loaded one
+                if (current == null || current.failed || current.loadedAt <= startedAt) {
+                    if (error == null) {
+                        stripe.put(guildId, new CachedPrefix(prefix, startedAt, false));
+                    } else {
+                        // the failure is remembered along the prefix known before, which keeps being used meanwhile
+                        stripe.put(guildId, new CachedPrefix(current != null ? current.prefix : null, clock.getAsLong(), true));
+                    }
+                }
+            }
+            loads.remove(guildId, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(prefix);
+            }
+        });
+        return created;
+    }
+
+    private static final class CacheStripe extends LinkedHashMap<Long, CachedPrefix> {
+
+        private final int capacity;
+
+        CacheStripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedPrefix> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static final class CachedPrefix {
+
+        private final String prefix;
+        // when the prefix was loaded, or when loading it failed
+        private final long loadedAt;
+        private final boolean failed;
+
+        private CachedPrefix(String prefix, long loadedAt, boolean failed) {
+            this.prefix = prefix;
+            this.loadedAt = loadedAt;
+            this.failed = failed;
+        }
+    }
+}
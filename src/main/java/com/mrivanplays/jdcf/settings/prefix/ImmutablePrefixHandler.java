@@ -38,4 +38,9 @@ public final class ImmutablePrefixHandler implements PrefixHandler {
     @Override
     public void savePrefixes() {
     }
+
+    @Override
+    public boolean mayStartWithPrefix(char firstChar) {
+        return prefix.isEmpty() || prefix.charAt(0) == firstChar;
+    }
 }
@@ -0,0 +1,89 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Represents an {@link AsyncPrefixHandler}, keeping the prefixes in memory and answering after a configurable latency.
+ * Stands in for a database, when testing or benchmarking a {@link CachingPrefixHandler}.
+ */
+public class InMemoryAsyncPrefixHandler implements AsyncPrefixHandler {
+
+    private final Map<Long, String> prefixes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long latencyNanos;
+
+    public InMemoryAsyncPrefixHandler(@NotNull ScheduledExecutorService scheduler, long latency, @NotNull TimeUnit unit) {
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+        setLatency(latency, unit);
+    }
+
+    @Override
+    public @NotNull CompletionStage<String> getGuildPrefix(long guildId) {
+        reads.incrementAndGet();
+        return answer(() -> prefixes.get(guildId));
+    }
+
+    @Override
+    public @NotNull CompletionStage<Void> setGuildPrefix(@NotNull String prefix, long guildId) {
+        Objects.requireNonNull(prefix, "prefix");
+        writes.incrementAndGet();
+        return answer(() -> {
+            prefixes.put(guildId, prefix);
+            return null;
+        });
+    }
+
+    /**
+     * Sets the latency of every following read and write.
+     *
+     * @param latency latency
+     * @param unit    unit of the latency
+     */
+    public void setLatency(long latency, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        Utils.checkState(latency >= 0, "latency cannot be negative");
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Returns how many times a prefix was looked up.
+     *
+     * @return read count
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    /**
+     * Returns how many times a prefix was stored.
+     *
+     * @return write count
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    private <T> CompletionStage<T> answer(Supplier<T> operation) {
+        long latency = latencyNanos;
+        if (latency == 0) {
+            return CompletableFuture.completedFuture(operation.get());
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.schedule(() -> future.complete(operation.get()), latency, TimeUnit.NANOSECONDS);
+        return future;
+    }
+}
@@ -0,0 +1,402 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Represents a prefix handler, which keeps its prefixes in a journal. Every prefix change is appended to a log file as
+ * a small record and synced to the disk right away, so no change is lost if the bot crashes. {@link #savePrefixes()}
+ * compacts the journal: it writes a snapshot of all prefixes, atomically replacing the previous one, and drops the log
+ * records the snapshot covers. On startup the snapshot and the log are replayed. User prefixes aren't journaled, they
+ * are kept in the {@link UserPrefixes} the journal is opened with, and saved along a compaction.
+ *
+ * <p>Files kept in the journal directory:
+ *
+ * <ul>
+ * <li><code>prefixes.snapshot</code> - all prefixes as of the last compaction</li>
+ * <li><code>prefixes.log</code> - changes since the last compaction</li>
+ * <li><code>prefixes.log.1</code> - changes being compacted, present only while (or if the bot crashed while)
+ * compacting</li>
+ * </ul>
+ */
+public final class JournalPrefixHandler extends MapPrefixHandler {
+
+    private static final int SNAPSHOT_MAGIC = 0x4A444346; // JDCF
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final byte GUILD_PREFIX_RECORD = 'G';
+    // prefix lengths are stored as unsigned shorts
+    private static final int MAX_PREFIX_BYTES = 0xFFFF;
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    /**
+     * Opens the journal in the specified directory, creating it if it doesn't exist.
+     *
+     * @param directory journal directory
+     * @return prefix handler
+     * @throws IOException if the journal can't be read
+     */
+    @NotNull
+    public static JournalPrefixHandler open(@NotNull File directory) throws IOException {
+        return open(directory, null);
+    }
+
+    /**
+     * Opens the journal in the specified directory, creating it if it doesn't exist. If there is no journal yet, the
+     * prefixes of {@link PrefixHandler#defaultHandler(ObjectMapper)} are imported from <code>prefixes.json</code>.
+     *
+     * @param directory  journal directory
+     * @param jsonMapper jackson object mapper, reading <code>prefixes.json</code>, or null to not import
+     * @return prefix handler
+     * @throws IOException if the journal can't be read
+     */
+    @NotNull
+    public static JournalPrefixHandler open(@NotNull File directory, @Nullable ObjectMapper jsonMapper) throws IOException {
+        return open(directory, jsonMapper, new UserPrefixes());
+    }
+
+    /**
+     * Opens the journal in the specified directory, like {@link #open(File, ObjectMapper)}, keeping user prefixes in the
+     * specified user prefixes.
+     *
+     * @param directory    journal directory
+     * @param jsonMapper   jackson object mapper, reading <code>prefixes.json</code>, or null to not import
+     * @param userPrefixes user prefixes
+     * @return prefix handler
+     * @throws IOException if the journal can't be read
+     */
+    @NotNull
+    public static JournalPrefixHandler open(@NotNull File directory, @Nullable ObjectMapper jsonMapper,
+                                            @NotNull UserPrefixes userPrefixes) throws IOException {
+        Objects.requireNonNull(directory, "directory");
+        Objects.requireNonNull(userPrefixes, "userPrefixes");
+        Path dir = directory.toPath();
+        Files.createDirectories(dir);
+        Path snapshot = dir.resolve("prefixes.snapshot");
+        Path log = dir.resolve("prefixes.log");
+        Path rotatedLog = dir.resolve("prefixes.log.1");
+
+        Map<Long, String> prefixes = new ConcurrentHashMap<>();
+        boolean journalExists = Files.exists(snapshot) || Files.exists(log) || Files.exists(rotatedLog);
+        if (Files.exists(snapshot)) {
+            readSnapshot(snapshot, prefixes);
+        }
+        boolean replayed = replay(rotatedLog, prefixes) | replay(log, prefixes);
+        if (!journalExists && jsonMapper != null) {
+            replayed = importJson(new File("prefixes.json"), jsonMapper, prefixes);
+        }
+        JournalPrefixHandler handler = new JournalPrefixHandler(prefixes, snapshot, log, rotatedLog, userPrefixes);
+        if (replayed) {
+            // start from a clean journal, which also drops a record torn by a crash
+            handler.compact();
+        }
+        handler.openLog();
+        return handler;
+    }
+
+    private final Map<Long, String> prefixes;
+    private final Path snapshot;
+    private final Path log;
+    private final Path rotatedLog;
+    private final Object journalLock = new Object();
+    private final Object compactLock = new Object();
+    private final Logger logger = LoggerFactory.getLogger(JournalPrefixHandler.class);
+    private FileChannel logChannel;
+    // size the log should be cut back to when it is opened again, or -1
+    private long logTruncateSize = -1;
+
+    private JournalPrefixHandler(Map<Long, String> prefixes, Path snapshot, Path log, Path rotatedLog,
+                                 UserPrefixes userPrefixes) {
+        super(prefixes, map -> {
+        }, "!", userPrefixes);
+        this.prefixes = prefixes;
+        this.snapshot = snapshot;
+        this.log = log;
+        this.rotatedLog = rotatedLog;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the change can't be written to the journal
+     */
+    @Override
+    public void setGuildPrefix(@NotNull String prefix, long guildId) {
+        Objects.requireNonNull(prefix, "prefix");
+        Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        Utils.checkState(prefixBytes.length <= MAX_PREFIX_BYTES, "prefix too long");
+        ByteBuffer record = ByteBuffer.allocate(1 + 8 + 2 + prefixBytes.length + 4);
+        record.put(GUILD_PREFIX_RECORD).putLong(guildId).putShort((short) prefixBytes.length).put(prefixBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        record.flip();
+        synchronized (journalLock) {
+            long logSize = -1;
+            try {
+                openLog();
+                logSize = logChannel.size();
+                while (record.hasRemaining()) {
+                    logChannel.write(record);
+                }
+                logChannel.force(false);
+            } catch (IOException e) {
+                if (logSize != -1) {
+                    // replay stops at a torn record, so it can't stay in front of the records written after it
+                    discardFrom(logSize, e);
+                }
+                throw new UncheckedIOException("Could not write prefix of guild " + guildId + " to the journal", e);
+            }
+            // the log and the map change together, so a compaction sees either both or none
+            super.setGuildPrefix(prefix, guildId);
+        }
+    }
+
+    /**
+     * Compacts the journal into a new snapshot, and saves the user prefixes.
+     */
+    @Override
+    public void savePrefixes() {
+        try {
+            compact();
+        } catch (IOException e) {
+            logger.error("Could not compact the prefix journal", e);
+        }
+        getUserPrefixes().save();
+    }
+
+    private void compact() throws IOException {
+        synchronized (compactLock) {
+            Map<Long, String> copy;
+            synchronized (journalLock) {
+                copy = new HashMap<>(prefixes);
+                rotateLog();
+            }
+            // the copy covers everything in the rotated log, so it can go once the snapshot is in place
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            writeSnapshot(temp, copy);
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            // the rename is only durable once the directory is synced, and the log can't go before it is
+            syncDirectory(snapshot.getParent());
+            if (Files.deleteIfExists(rotatedLog)) {
+                syncDirectory(rotatedLog.getParent());
+            }
+        }
+    }
+
+    private void discardFrom(long logSize, IOException cause) {
+        try {
+            logChannel.truncate(logSize);
+            logChannel.force(false);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            // the log gets cut back once it is opened again
+            logTruncateSize = logSize;
+            try {
+                logChannel.close();
+            } catch (IOException closeError) {
+                cause.addSuppressed(closeError);
+            }
+            logChannel = null;
+        }
+    }
+
+    private void rotateLog() throws IOException {
+        if (logTruncateSize != -1) {
+            // a torn record can't be rotated along
+            openLog();
+        }
+        if (logChannel != null) {
+            logChannel.close();
+            logChannel = null;
+        }
+        try {
+            if (Files.exists(log)) {
+                if (Files.exists(rotatedLog)) {
+                    // a compaction before failed, the rotated log isn't covered by a snapshot yet
+                    try (FileChannel target = FileChannel.open(rotatedLog, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                        Files.copy(log, Channels.newOutputStream(target));
+                        target.force(false);
+                    }
+                    Files.delete(log);
+                } else {
+                    Files.move(log, rotatedLog, StandardCopyOption.ATOMIC_MOVE);
+                }
+                syncDirectory(log.getParent());
+            }
+        } finally {
+            openLog();
+        }
+    }
+
+    private void openLog() throws IOException {
+        if (logChannel == null) {
+            FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (logTruncateSize != -1) {
+                try {
+                    channel.truncate(logTruncateSize);
+                    channel.force(false);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+                logTruncateSize = -1;
+            }
+            logChannel = channel;
+        }
+    }
+
+    private static void writeSnapshot(Path file, Map<Long, String> prefixes) throws IOException {
+        try (OutputStream fileOut = Files.newOutputStream(file)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeInt(prefixes.size());
+            for (Map.Entry<Long, String> entry : prefixes.entrySet()) {
+                byte[] prefix = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                if (prefix.length > MAX_PREFIX_BYTES) {
+                    // would silently truncate the length and corrupt the snapshot
+                    throw new IOException("Prefix of guild " + entry.getKey() + " is too long to be stored");
+                }
+                out.writeLong(entry.getKey());
+                out.writeShort(prefix.length);
+                out.write(prefix);
+            }
+            out.flush();
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private static void syncDirectory(Path directory) throws IOException {
+        if (WINDOWS) {
+            // directories can't be opened there, and ntfs makes renames durable on its own
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void readSnapshot(Path file, Map<Long, String> prefixes) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileIn), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a prefix snapshot: " + file);
+            }
+            int count = in.readInt();
+            Map<Long, String> read = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                long guildId = in.readLong();
+                byte[] prefix = new byte[in.readUnsignedShort()];
+                in.readFully(prefix);
+                read.put(guildId, new String(prefix, StandardCharsets.UTF_8));
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Corrupt prefix snapshot: " + file);
+            }
+            prefixes.putAll(read);
+        }
+    }
+
+    /**
+     * Replays the records of the specified log, stopping at the first incomplete or corrupt one.
+     *
+     * @return whenever the log existed
+     */
+    private static boolean replay(Path file, Map<Long, String> prefixes) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int type = in.read();
+                if (type != GUILD_PREFIX_RECORD) {
+                    // end of the log, or garbage after a crash
+                    break;
+                }
+                long guildId = in.readLong();
+                int length = in.readUnsignedShort();
+                byte[] prefix = new byte[length];
+                in.readFully(prefix);
+                int checksum = in.readInt();
+                ByteBuffer record = ByteBuffer.allocate(1 + 8 + 2 + length);
+                record.put((byte) type).putLong(guildId).putShort((short) length).put(prefix);
+                crc.reset();
+                crc.update(record.array(), 0, record.capacity());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                prefixes.put(guildId, new String(prefix, StandardCharsets.UTF_8));
+            }
+        } catch (EOFException e) {
+            // a record torn by a crash, everything before it is fine
+        }
+        return true;
+    }
+
+    private static boolean importJson(File file, ObjectMapper jsonMapper, Map<Long, String> prefixes) {
+        if (!file.exists() || file.length() == 0) {
+            return false;
+        }
+        try {
+            Map<Long, String> imported = jsonMapper.readValue(file, new TypeReference<HashMap<Long, String>>() {
+            });
+            if (imported != null) {
+                for (Map.Entry<Long, String> entry : imported.entrySet()) {
+                    String prefix = entry.getValue();
+                    if (entry.getKey() == null || prefix == null
+                            || prefix.getBytes(StandardCharsets.UTF_8).length > MAX_PREFIX_BYTES) {
+                        LoggerFactory.getLogger(JournalPrefixHandler.class).warn(
+                                "Skipping invalid prefix of guild " + entry.getKey() + " in " + file);
+                        continue;
+                    }
+                    prefixes.put(entry.getKey(), prefix);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LoggerFactory.getLogger(JournalPrefixHandler.class).error("Could not import prefixes from " + file, e);
+            return false;
+        }
+    }
+}
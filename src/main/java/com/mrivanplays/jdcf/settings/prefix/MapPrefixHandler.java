@@ -11,22 +11,34 @@ import java.util.function.Consumer;
 
 /**
  * Represents a prefix handler, working with a simple map. Opens opportunities for much different long term storage
- * types.
+ * types. User prefixes are kept in {@link UserPrefixes}, in memory only unless specified otherwise.
  */
 public class MapPrefixHandler implements PrefixHandler {
 
     private Map<Long, String> prefixesMap;
     private Consumer<Map<Long, String>> saveFunction;
     private String defaultPrefix;
+    private final UserPrefixes userPrefixes;
+    private final PrefixFilter prefixFilter = new PrefixFilter();
 
     public MapPrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction) {
         this(prefixesMap, saveFunction, "!");
     }
 
     public MapPrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction, String defaultPrefix) {
+        this(prefixesMap, saveFunction, defaultPrefix, new UserPrefixes());
+    }
+
+    public MapPrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction, String defaultPrefix,
+                            @NotNull UserPrefixes userPrefixes) {
+        this.userPrefixes = Objects.requireNonNull(userPrefixes, "userPrefixes");
         this.prefixesMap = prefixesMap;
         this.saveFunction = saveFunction;
         this.defaultPrefix = defaultPrefix;
+        prefixFilter.add(defaultPrefix);
+        for (String prefix : prefixesMap.values()) {
+            prefixFilter.add(prefix);
+        }
     }
 
     @Override
@@ -36,7 +48,11 @@ public class MapPrefixHandler implements PrefixHandler {
 
     @Override
     public void setDefaultPrefix(@NotNull String defaultPrefix) {
-        this.defaultPrefix = Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+        Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+        String oldPrefix = this.defaultPrefix;
+        prefixFilter.add(defaultPrefix);
+        this.defaultPrefix = defaultPrefix;
+        prefixFilter.remove(oldPrefix);
     }
 
     @Override
@@ -48,15 +64,44 @@ public class MapPrefixHandler implements PrefixHandler {
     public void setGuildPrefix(@NotNull String prefix, long guildId) {
         Objects.requireNonNull(prefix, "prefix");
         Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
-        if (!prefixesMap.containsKey(guildId)) {
-            prefixesMap.put(guildId, prefix);
-        } else {
-            prefixesMap.replace(guildId, prefix);
-        }
+        // the new prefix has to pass the filter before it can be looked up
+        prefixFilter.add(prefix);
+        prefixFilter.remove(prefixesMap.put(guildId, prefix));
+    }
+
+    @Override
+    public boolean isUserPrefixSupported() {
+        return true;
+    }
+
+    @Override
+    public @Nullable String getUserPrefix(long userId) {
+        return userPrefixes.get(userId);
+    }
+
+    @Override
+    public void setUserPrefix(@NotNull String prefix, long userId) {
+        userPrefixes.set(prefix, userId);
+    }
+
+    /**
+     * Returns the prefixes users have set for commands in their DMs.
+     *
+     * @return user prefixes
+     */
+    @NotNull
+    public UserPrefixes getUserPrefixes() {
+        return userPrefixes;
     }
 
     @Override
     public void savePrefixes() {
         saveFunction.accept(prefixesMap);
+        userPrefixes.save();
+    }
+
+    @Override
+    public boolean mayStartWithPrefix(char firstChar) {
+        return prefixFilter.mayMatch(firstChar);
     }
 }
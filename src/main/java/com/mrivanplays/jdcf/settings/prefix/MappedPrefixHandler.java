@@ -0,0 +1,625 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents a prefix handler, reading its prefixes straight out of a memory mapped binary snapshot. Opening it only
+ * maps the file, so the bot can answer commands right away, and the parts of the snapshot which are needed get paged
+ * in by the operating system on the first lookup. Prefixes changed after the snapshot was opened are kept in memory,
+ * until {@link #savePrefixes()} writes them in a new snapshot. User prefixes aren't part of the snapshot, they are kept
+ * in the {@link UserPrefixes} the handler is opened with.
+ *
+ * <p>A mapped file can't be replaced on every platform (windows refuses to while it is mapped), so saved snapshots
+ * are written next to the opened file as <code>&lt;file&gt;.&lt;generation&gt;</code>, and the newest generation is
+ * opened. Older generations are deleted once they are no longer needed, or on a later save if they can't be yet.
+ *
+ * <p>A snapshot is validated when it is mapped, which reads the block table, the prefix indexes and the pool offsets
+ * once, but not the guild ids or the prefixes themselves.
+ *
+ * <p>Snapshot layout (big endian):
+ *
+ * <ul>
+ * <li>header: magic, version, guild count, pool count, block size and the offsets of the sections below</li>
+ * <li>guild ids: sorted <code>long</code>s, binary searched</li>
+ * <li>block table: an <code>int</code> offset of every block size-th prefix index, so a lookup decodes a block at
+ * most</li>
+ * <li>prefix indexes: the varint pool index of every guild, in guild id order</li>
+ * <li>string pool: an <code>int</code> offset per pool entry, then the entries as a length prefixed UTF-8 string</li>
+ * </ul>
+ */
+public final class MappedPrefixHandler implements PrefixHandler {
+
+    private static final int SNAPSHOT_MAGIC = 0x4A444350; // JDCP
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 4 * 8;
+    private static final int BLOCK_SIZE = 32;
+
+    /**
+     * Opens the newest snapshot of the specified file. If there is none, the handler starts empty and creates one on
+     * the first {@link #savePrefixes()}.
+     *
+     * @param file snapshot file
+     * @return prefix handler
+     * @throws IOException if the snapshot can't be read
+     */
+    @NotNull
+    public static MappedPrefixHandler open(@NotNull File file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Opens the newest snapshot of the specified file. If there is none, but the specified json file exists, the json
+     * file is converted into a snapshot first.
+     *
+     * @param file     snapshot file
+     * @param jsonFile json file, as saved by {@link PrefixHandler#defaultHandler(com.fasterxml.jackson.databind.ObjectMapper)},
+     *                 or null to not convert
+     * @return prefix handler
+     * @throws IOException if the snapshot can't be read or the json file can't be converted
+     */
+    @NotNull
+    public static MappedPrefixHandler open(@NotNull File file, @Nullable File jsonFile) throws IOException {
+        return open(file, jsonFile, new UserPrefixes());
+    }
+
+    /**
+     * Opens the newest snapshot of the specified file, like {@link #open(File, File)}, keeping user prefixes in the
+     * specified user prefixes.
+     *
+     * @param file         snapshot file
+     * @param jsonFile     json file, as saved by {@link PrefixHandler#defaultHandler(com.fasterxml.jackson.databind.ObjectMapper)},
+     *                     or null to not convert
+     * @param userPrefixes user prefixes
+     * @return prefix handler
+     * @throws IOException if the snapshot can't be read or the json file can't be converted
+     */
+    @NotNull
+    public static MappedPrefixHandler open(@NotNull File file, @Nullable File jsonFile, @NotNull UserPrefixes userPrefixes)
+            throws IOException {
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(userPrefixes, "userPrefixes");
+        Path path = file.toPath();
+        long generation = latestGeneration(path);
+        if (generation == -1 && jsonFile != null && jsonFile.exists() && jsonFile.length() != 0) {
+            convertJson(jsonFile, file);
+            generation = 0;
+        }
+        Snapshot snapshot = generation == -1 ? Snapshot.EMPTY : Snapshot.map(generationFile(path, generation));
+        deleteOlderGenerations(path, generation);
+        return new MappedPrefixHandler(path, generation, snapshot, userPrefixes);
+    }
+
+    /**
+     * Converts a json prefixes file, as saved by {@link PrefixHandler#defaultHandler(com.fasterxml.jackson.databind.ObjectMapper)},
+     * into a snapshot. The json file is streamed, so it is never held in memory as a whole.
+     *
+     * @param jsonFile json file
+     * @param file     snapshot file to write
+     * @throws IOException if the json file can't be read or the snapshot can't be written
+     */
+    public static void convertJson(@NotNull File jsonFile, @NotNull File file) throws IOException {
+        Objects.requireNonNull(jsonFile, "jsonFile");
+        Objects.requireNonNull(file, "file");
+        Map<Long, String> prefixes = new HashMap<>();
+        try (JsonParser parser = new JsonFactory().createParser(jsonFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a prefixes json file: " + jsonFile);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                long guildId;
+                try {
+                    guildId = Long.parseLong(parser.getCurrentName());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not a guild id: " + parser.getCurrentName(), e);
+                }
+                if (parser.nextToken() == JsonToken.VALUE_STRING && guildId > 0) {
+                    prefixes.put(guildId, parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        writeSnapshot(file.toPath(), prefixes);
+    }
+
+    /**
+     * Writes the specified prefixes as a snapshot, atomically replacing the file if it exists.
+     *
+     * @param file     snapshot file
+     * @param prefixes guild prefixes
+     * @throws IOException if the snapshot can't be written
+     */
+    public static void writeSnapshot(@NotNull Path file, @NotNull Map<Long, String> prefixes) throws IOException {
+        Objects.requireNonNull(file, "file");
+        Objects.requireNonNull(prefixes, "prefixes");
+        long[] guildIds = new long[prefixes.size()];
+        int count = 0;
+        for (Long guildId : prefixes.keySet()) {
+            guildIds[count++] = guildId;
+        }
+        Arrays.sort(guildIds);
+
+        Map<String, Integer> poolIndexes = new HashMap<>();
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        DataOutputStream poolOut = new DataOutputStream(pool);
+        int[] poolOffsets = new int[16];
+        ByteArrayOutputStream indexes = new ByteArrayOutputStream(guildIds.length);
+        int[] blockOffsets = new int[(guildIds.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        for (int i = 0; i < guildIds.length; i++) {
+            String prefix = prefixes.get(guildIds[i]);
+            Integer index = poolIndexes.get(prefix);
+            if (index == null) {
+                byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+                Utils.checkState(bytes.length <= 0xFFFF, "prefix too long");
+                index = poolIndexes.size();
+                if (index == poolOffsets.length) {
+                    poolOffsets = Arrays.copyOf(poolOffsets, index << 1);
+                }
+                poolOffsets[index] = poolOut.size();
+                poolOut.writeShort(bytes.length);
+                poolOut.write(bytes);
+                poolIndexes.put(prefix, index);
+            }
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[i / BLOCK_SIZE] = indexes.size();
+            }
+            writeVarInt(indexes, index);
+        }
+
+        int poolCount = poolIndexes.size();
+        long idsOffset = HEADER_SIZE;
+        long blocksOffset = idsOffset + 8L * guildIds.length;
+        long indexesOffset = blocksOffset + 4L * blockOffsets.length;
+        long poolOffsetsOffset = indexesOffset + indexes.size();
+        long poolDataOffset = poolOffsetsOffset + 4L * poolCount;
+        Utils.checkState(poolDataOffset + pool.size() <= Integer.MAX_VALUE, "too many prefixes for a snapshot");
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeInt(guildIds.length);
+            out.writeInt(poolCount);
+            out.writeInt(BLOCK_SIZE);
+            out.writeInt((int) idsOffset);
+            out.writeInt((int) blocksOffset);
+            out.writeInt((int) indexesOffset);
+            out.writeInt((int) poolOffsetsOffset);
+            out.writeInt((int) poolDataOffset);
+            for (long guildId : guildIds) {
+                out.writeLong(guildId);
+            }
+            for (int blockOffset : blockOffsets) {
+                out.writeInt(blockOffset);
+            }
+            indexes.writeTo(out);
+            for (int i = 0; i < poolCount; i++) {
+                out.writeInt(poolOffsets[i]);
+            }
+            pool.writeTo(out);
+            out.flush();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private final Path file;
+    private long generation;
+    private final Object lock = new Object();
+    private final Object saveLock = new Object();
+    private final Map<Long, String> overlay = new ConcurrentHashMap<>();
+    private final UserPrefixes userPrefixes;
+    private volatile Snapshot snapshot;
+    private volatile PrefixFilter prefixFilter;
+    private volatile String defaultPrefix = "!";
+
+    private MappedPrefixHandler(Path file, long generation, Snapshot snapshot, UserPrefixes userPrefixes) {
+        this.file = file;
+        this.userPrefixes = userPrefixes;
+        this.generation = generation;
+        this.snapshot = snapshot;
+        this.prefixFilter = createFilter();
+    }
+
+    @Override
+    public @NotNull String getDefaultPrefix() {
+        return defaultPrefix;
+    }
+
+    @Override
+    public void setDefaultPrefix(@NotNull String defaultPrefix) {
+        Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+        synchronized (lock) {
+            String oldPrefix = this.defaultPrefix;
+            prefixFilter.add(defaultPrefix);
+            this.defaultPrefix = defaultPrefix;
+            prefixFilter.remove(oldPrefix);
+        }
+    }
+
+    @Override
+    public @Nullable String getGuildPrefix(long guildId) {
+        String prefix = overlay.get(guildId);
+        return prefix != null ? prefix : snapshot.get(guildId);
+    }
+
+    @Override
+    public void setGuildPrefix(@NotNull String prefix, long guildId) {
+        Objects.requireNonNull(prefix, "prefix");
+        Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
+        synchronized (lock) {
+            // the new prefix has to pass the filter before it can be looked up
+            prefixFilter.add(prefix);
+            prefixFilter.remove(overlay.put(guildId, prefix));
+        }
+    }
+
+    @Override
+    public boolean isUserPrefixSupported() {
+        return true;
+    }
+
+    @Override
+    public @Nullable String getUserPrefix(long userId) {
+        return userPrefixes.get(userId);
+    }
+
+    @Override
+    public void setUserPrefix(@NotNull String prefix, long userId) {
+        userPrefixes.set(prefix, userId);
+    }
+
+    /**
+     * Writes a new snapshot, holding all guild prefixes, and maps it in place of the current one. The user prefixes are
+     * saved as well.
+     */
+    @Override
+    public void savePrefixes() {
+        saveSnapshot();
+        userPrefixes.save();
+    }
+
+    private void saveSnapshot() {
+        synchronized (saveLock) {
+            Snapshot current = snapshot;
+            Map<Long, String> changes = new HashMap<>(overlay);
+            if (changes.isEmpty() && current != Snapshot.EMPTY) {
+                return;
+            }
+            try {
+                Map<Long, String> prefixes = current.toMap();
+                prefixes.putAll(changes);
+                // a new file, as the current one is still mapped
+                long nextGeneration = generation + 1;
+                Path nextFile = generationFile(file, nextGeneration);
+                writeSnapshot(nextFile, prefixes);
+                Snapshot saved = Snapshot.map(nextFile);
+                generation = nextGeneration;
+                synchronized (lock) {
+                    snapshot = saved;
+                    // changes made while saving stay in the overlay
+                    for (Map.Entry<Long, String> change : changes.entrySet()) {
+                        overlay.remove(change.getKey(), change.getValue());
+                    }
+                    prefixFilter = createFilter();
+                }
+                deleteOlderGenerations(file, nextGeneration);
+            } catch (IOException e) {
+                LoggerFactory.getLogger(MappedPrefixHandler.class).error("Could not save the prefix snapshot", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean mayStartWithPrefix(char firstChar) {
+        return prefixFilter.mayMatch(firstChar);
+    }
+
+    /**
+     * Returns the count of guilds with a prefix set.
+     *
+     * @return guild count
+     */
+    public int getGuildCount() {
+        Snapshot current = snapshot;
+        int count = current.guildCount;
+        for (Long guildId : overlay.keySet()) {
+            if (current.indexOf(guildId) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private PrefixFilter createFilter() {
+        PrefixFilter filter = new PrefixFilter();
+        filter.add(defaultPrefix);
+        // the filter is rebuilt on every save, so snapshot prefixes are added once, no matter how many guilds use them
+        Snapshot current = snapshot;
+        for (int i = 0; i < current.poolCount; i++) {
+            filter.add(current.poolString(i));
+        }
+        for (String prefix : overlay.values()) {
+            filter.add(prefix);
+        }
+        return filter;
+    }
+
+    private static Path generationFile(Path file, long generation) {
+        return generation == 0 ? file : file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    /**
+     * Returns the newest generation of the specified snapshot file: 0 for the file itself, -1 if there is none.
+     */
+    private static long latestGeneration(Path file) throws IOException {
+        long latest = Files.exists(file) ? 0 : -1;
+        for (long generation : listGenerations(file)) {
+            latest = Math.max(latest, generation);
+        }
+        return latest;
+    }
+
+    private static long[] listGenerations(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+        long[] generations = new long[4];
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path sibling : stream) {
+                String suffix = sibling.getFileName().toString().substring(prefix.length());
+                long generation = parseGeneration(suffix);
+                if (generation > 0) {
+                    if (count == generations.length) {
+                        generations = Arrays.copyOf(generations, count << 1);
+                    }
+                    generations[count++] = generation;
+                }
+            }
+        }
+        return Arrays.copyOf(generations, count);
+    }
+
+    // -1 for anything which isn't a generation, e.g. the temp file of a snapshot being written
+    private static long parseGeneration(String suffix) {
+        if (suffix.isEmpty() || suffix.length() > 18) {
+            return -1;
+        }
+        long generation = 0;
+        for (int i = 0; i < suffix.length(); i++) {
+            char c = suffix.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            generation = generation * 10 + (c - '0');
+        }
+        return generation;
+    }
+
+    private static void deleteOlderGenerations(Path file, long current) {
+        try {
+            if (current > 0) {
+                deleteGeneration(file);
+            }
+            for (long generation : listGenerations(file)) {
+                if (generation < current) {
+                    deleteGeneration(generationFile(file, generation));
+                }
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(MappedPrefixHandler.class).warn("Could not list old prefix snapshots", e);
+        }
+    }
+
+    private static void deleteGeneration(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // still mapped on windows, until the old mapping gets collected. The next save tries again
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(ByteBuffer.allocate(HEADER_SIZE), 0, 0, 1, 0, 0, 0, 0, 0);
+
+        static Snapshot map(Path file) throws IOException {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // the mapping stays valid after the channel is closed
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer = mapped;
+            }
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != SNAPSHOT_MAGIC || buffer.get(4) != SNAPSHOT_VERSION) {
+                throw new IOException("Not a prefix snapshot: " + file);
+            }
+            Snapshot snapshot = new Snapshot(buffer, buffer.getInt(5), buffer.getInt(9), buffer.getInt(13),
+                    buffer.getInt(17), buffer.getInt(21), buffer.getInt(25), buffer.getInt(29), buffer.getInt(33));
+            if (!snapshot.isValid()) {
+                // fail here, instead of on a lookup on the event thread
+                throw new IOException("Corrupt prefix snapshot: " + file);
+            }
+            return snapshot;
+        }
+
+        private final ByteBuffer buffer;
+        final int guildCount;
+        final int poolCount;
+        private final int blockSize;
+        private final int idsOffset;
+        private final int blocksOffset;
+        private final int indexesOffset;
+        private final int poolOffsetsOffset;
+        private final int poolDataOffset;
+        // decoded on first use, a race only decodes a string twice
+        private final String[] poolStrings;
+
+        private Snapshot(ByteBuffer buffer, int guildCount, int poolCount, int blockSize, int idsOffset,
+                         int blocksOffset, int indexesOffset, int poolOffsetsOffset, int poolDataOffset) {
+            this.buffer = buffer;
+            this.guildCount = guildCount;
+            this.poolCount = poolCount;
+            this.blockSize = blockSize;
+            this.idsOffset = idsOffset;
+            this.blocksOffset = blocksOffset;
+            this.indexesOffset = indexesOffset;
+            this.poolOffsetsOffset = poolOffsetsOffset;
+            this.poolDataOffset = poolDataOffset;
+            this.poolStrings = new String[poolCount];
+        }
+
+        private boolean isValid() {
+            if (guildCount < 0 || poolCount < 0 || blockSize <= 0) {
+                return false;
+            }
+            long blockCount = ((long) guildCount + blockSize - 1) / blockSize;
+            // every section has to fit between the previous one and the next one
+            if (idsOffset < HEADER_SIZE
+                    || idsOffset + 8L * guildCount > blocksOffset
+                    || blocksOffset + 4L * blockCount > indexesOffset
+                    || (long) indexesOffset + guildCount > poolOffsetsOffset
+                    || poolOffsetsOffset + 4L * poolCount > poolDataOffset
+                    || poolDataOffset > buffer.capacity()) {
+                return false;
+            }
+            // every prefix index has to be a whole varint within its section, pointing into the pool, and every block
+            // has to start at the first index it covers, so lookups never read out of bounds
+            int offset = indexesOffset;
+            for (int i = 0; i < guildCount; i++) {
+                if (i % blockSize == 0 && buffer.getInt(blocksOffset + (i / blockSize << 2)) != offset - indexesOffset) {
+                    return false;
+                }
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (offset >= poolOffsetsOffset || shift > 28) {
+                        return false;
+                    }
+                    b = buffer.get(offset++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (value < 0 || value >= poolCount) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < poolCount; i++) {
+                long entryOffset = (long) poolDataOffset + buffer.getInt(poolOffsetsOffset + (i << 2));
+                if (entryOffset < poolDataOffset || entryOffset + 2 > buffer.capacity()
+                        || entryOffset + 2 + (buffer.getShort((int) entryOffset) & 0xFFFF) > buffer.capacity()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String get(long guildId) {
+            int position = indexOf(guildId);
+            return position < 0 ? null : poolString(prefixIndex(position));
+        }
+
+        int indexOf(long guildId) {
+            int low = 0;
+            int high = guildCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long id = buffer.getLong(idsOffset + (middle << 3));
+                if (id < guildId) {
+                    low = middle + 1;
+                } else if (id > guildId) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int prefixIndex(int position) {
+            int offset = indexesOffset + buffer.getInt(blocksOffset + (position / blockSize << 2));
+            int value = 0;
+            for (int skip = position % blockSize; skip >= 0; skip--) {
+                value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(offset++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+            }
+            return value;
+        }
+
+        String poolString(int index) {
+            String string = poolStrings[index];
+            if (string == null) {
+                int offset = poolDataOffset + buffer.getInt(poolOffsetsOffset + (index << 2));
+                byte[] bytes = new byte[buffer.getShort(offset) & 0xFFFF];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + 2);
+                view.get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+                poolStrings[index] = string;
+            }
+            return string;
+        }
+
+        Map<Long, String> toMap() {
+            Map<Long, String> map = new HashMap<>(guildCount * 4 / 3 + 1);
+            int offset = indexesOffset;
+            for (int i = 0; i < guildCount; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(offset++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                map.put(buffer.getLong(idsOffset + (i << 3)), poolString(value));
+            }
+            return map;
+        }
+    }
+}
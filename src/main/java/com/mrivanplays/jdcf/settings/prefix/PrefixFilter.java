@@ -0,0 +1,80 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Represents a bitmap of the first characters of all prefixes a {@link PrefixHandler} knows of. Used to tell, by only
+ * looking at the first character of a message, that the message can't start with any prefix. Characters are reference
+ * counted, so the filter stays exact while prefixes are being changed.
+ */
+public final class PrefixFilter {
+
+    private final AtomicLongArray bits = new AtomicLongArray((Character.MAX_VALUE + 1) >>> 6);
+    private final Map<Character, Integer> counts = new HashMap<>();
+    private int emptyPrefixes;
+    private volatile boolean matchAll;
+
+    /**
+     * Adds the specified prefix to the filter.
+     *
+     * @param prefix prefix
+     */
+    public synchronized void add(@Nullable String prefix) {
+        if (prefix == null) {
+            return;
+        }
+        if (prefix.isEmpty()) {
+            emptyPrefixes++;
+            matchAll = true;
+            return;
+        }
+        char first = prefix.charAt(0);
+        if (counts.merge(first, 1, Integer::sum) == 1) {
+            int index = first >>> 6;
+            bits.set(index, bits.get(index) | (1L << first));
+        }
+    }
+
+    /**
+     * Removes the specified prefix, previously added to the filter.
+     *
+     * @param prefix prefix
+     */
+    public synchronized void remove(@Nullable String prefix) {
+        if (prefix == null) {
+            return;
+        }
+        if (prefix.isEmpty()) {
+            if (emptyPrefixes > 0 && --emptyPrefixes == 0) {
+                matchAll = false;
+            }
+            return;
+        }
+        char first = prefix.charAt(0);
+        Integer count = counts.get(first);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            counts.remove(first);
+            int index = first >>> 6;
+            bits.set(index, bits.get(index) & ~(1L << first));
+        } else {
+            counts.put(first, count - 1);
+        }
+    }
+
+    /**
+     * Returns whenever any of the prefixes in this filter may start with the specified character.
+     *
+     * @param firstChar first character of a message
+     * @return <code>true</code> if a prefix starts with it, <code>false</code> otherwise
+     */
+    public boolean mayMatch(char firstChar) {
+        return matchAll || (bits.get(firstChar >>> 6) & (1L << firstChar)) != 0;
+    }
+}
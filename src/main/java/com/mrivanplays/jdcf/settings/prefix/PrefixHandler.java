@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -28,7 +29,8 @@ import java.util.function.Consumer;
 public interface PrefixHandler {
 
     /**
-     * Default implementation of a prefix handler, using json file as a long term storage.
+     * Default implementation of a prefix handler, using json file as a long term storage. User prefixes are kept in
+     * <code>user_prefixes.json</code>, for at most 10000 users.
      *
      * @param jsonMapper jackson object mapper
      * @return non null default prefix handler
@@ -46,6 +48,7 @@ public interface PrefixHandler {
             } catch (IOException ignored) {
             }
         }
+        UserPrefixes userPrefixes = UserPrefixes.fromJson(jsonMapper, new File("user_prefixes.json"), 10000);
         Consumer<Map<Long, String>> saveFunction = saveMap -> {
             file.delete();
             try {
@@ -62,11 +65,11 @@ public interface PrefixHandler {
             if (map == null) {
                 map = new HashMap<>();
             }
-            prefixHandler = new MapPrefixHandler(map, saveFunction);
+            prefixHandler = new MapPrefixHandler(map, saveFunction, "!", userPrefixes);
         } catch (IOException ignored) {
         }
         if (prefixHandler == null) {
-            prefixHandler = new MapPrefixHandler(new HashMap<>(), saveFunction);
+            prefixHandler = new MapPrefixHandler(new HashMap<>(), saveFunction, "!", userPrefixes);
         }
         return prefixHandler;
     }
@@ -108,6 +111,20 @@ public interface PrefixHandler {
      */
     void savePrefixes();
 
+    /**
+     * Returns whenever a message, starting with the specified character, may start with any of the prefixes this
+     * handler holds. Used to drop messages which can't be commands before any prefix is being looked up, so an
+     * implementation should never return <code>false</code> for a character a prefix of it starts with. Handlers which
+     * can't tell should leave the default, which always returns <code>true</code>.
+     *
+     * @param firstChar the first character of the message
+     * @return <code>false</code> if no prefix starts with the character, <code>true</code> otherwise
+     * @see PrefixFilter
+     */
+    default boolean mayStartWithPrefix(char firstChar) {
+        return true;
+    }
+
     /**
      * Returns a usable command prefix.
      *
@@ -121,13 +138,57 @@ public interface PrefixHandler {
     }
 
     /**
-     * Gets the prefix of which the bot is going to listen for commands in DMs of this user.
+     * Returns whenever this handler keeps prefixes users set for commands in their DMs. Handlers which do should keep
+     * them apart from the guild prefixes, e.g. in {@link UserPrefixes}, as any user can set one. The default returns
+     * <code>false</code>.
+     *
+     * @return <code>true</code> if user prefixes are supported, <code>false</code> otherwise
+     */
+    default boolean isUserPrefixSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the prefix, which the specified user has set for commands in their DMs. The default returns null, as
+     * user prefixes aren't supported by default.
+     *
+     * @param userId the user id
+     * @return user prefix
+     * @see #isUserPrefixSupported()
+     */
+    @Nullable
+    default String getUserPrefix(long userId) {
+        return null;
+    }
+
+    /**
+     * Sets a new prefix for commands in DMs of the specified user.
+     *
+     * @param prefix the prefix you want to set
+     * @param userId the user id for which you want to set the prefix
+     * @throws UnsupportedOperationException if user prefixes aren't supported
+     * @throws IllegalArgumentException      if the handler doesn't accept the prefix
+     * @see #isUserPrefixSupported()
+     */
+    default void setUserPrefix(@NotNull String prefix, long userId) {
+        throw new UnsupportedOperationException("User prefixes aren't supported by " + getClass().getName());
+    }
+
+    /**
+     * Gets the prefix of which the bot is going to listen for commands in DMs of this user. Unless the user has set a
+     * prefix, this walks the mutual guilds of the user, so prefer {@link
+     * com.mrivanplays.jdcf.CommandManager#getPrefix(Guild, User)}, which caches the guild.
      *
      * @param user the user who wants to execute commands in DMs
-     * @return prefix of guild
+     * @return user prefix if set, else prefix of a mutual guild, else the default one
      */
     @NotNull
     default String getPrefix(User user) {
-        return getPrefix(user.getMutualGuilds().get(0).getIdLong());
+        String userPrefix = getUserPrefix(user.getIdLong());
+        if (userPrefix != null) {
+            return userPrefix;
+        }
+        List<Guild> mutualGuilds = user.getMutualGuilds();
+        return mutualGuilds.isEmpty() ? getDefaultPrefix() : getPrefix(mutualGuilds.get(0).getIdLong());
     }
 }
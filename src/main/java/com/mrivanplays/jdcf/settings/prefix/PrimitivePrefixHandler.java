@@ -0,0 +1,297 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Represents a prefix handler, working like {@link MapPrefixHandler}, but keeping the prefixes in an open addressing
+ * table of primitive guild ids, pointing into a pool of interned prefixes. Guilds with the same prefix share a single
+ * string, and looking a prefix up neither boxes the guild id nor takes a lock: reads are optimistic, and retried
+ * under a read lock only if a write happened meanwhile. User prefixes are kept in {@link UserPrefixes}, in memory only
+ * unless specified otherwise.
+ */
+public class PrimitivePrefixHandler implements PrefixHandler {
+
+    private final StampedLock lock = new StampedLock();
+    private final Consumer<Map<Long, String>> saveFunction;
+    private final PrefixFilter prefixFilter = new PrefixFilter();
+    private final UserPrefixes userPrefixes;
+    private volatile String defaultPrefix;
+
+    // table: guild ids (0 means a free slot) and the pool indexes of their prefixes
+    private long[] guildIds;
+    private int[] prefixIndexes;
+    private int size;
+
+    // pool: interned prefixes, how many guilds use each, and the free indexes
+    private String[] pool;
+    private int[] poolReferences;
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int[] freePoolIndexes = new int[4];
+    private int freePoolCount;
+    private int poolSize;
+
+    public PrimitivePrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction) {
+        this(prefixesMap, saveFunction, "!");
+    }
+
+    public PrimitivePrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction, String defaultPrefix) {
+        this(prefixesMap, saveFunction, defaultPrefix, new UserPrefixes());
+    }
+
+    public PrimitivePrefixHandler(Map<Long, String> prefixesMap, Consumer<Map<Long, String>> saveFunction, String defaultPrefix,
+                                  @NotNull UserPrefixes userPrefixes) {
+        Objects.requireNonNull(prefixesMap, "prefixesMap");
+        this.userPrefixes = Objects.requireNonNull(userPrefixes, "userPrefixes");
+        this.saveFunction = Objects.requireNonNull(saveFunction, "saveFunction");
+        this.defaultPrefix = Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+        int capacity = 16;
+        while (capacity * 3 < prefixesMap.size() * 4) {
+            capacity <<= 1;
+        }
+        this.guildIds = new long[capacity];
+        this.prefixIndexes = new int[capacity];
+        this.pool = new String[8];
+        this.poolReferences = new int[8];
+        prefixFilter.add(defaultPrefix);
+        for (Map.Entry<Long, String> entry : prefixesMap.entrySet()) {
+            setGuildPrefix(entry.getValue(), entry.getKey());
+        }
+    }
+
+    @Override
+    public @NotNull String getDefaultPrefix() {
+        return defaultPrefix;
+    }
+
+    @Override
+    public void setDefaultPrefix(@NotNull String defaultPrefix) {
+        Objects.requireNonNull(defaultPrefix, "defaultPrefix");
+        String oldPrefix = this.defaultPrefix;
+        prefixFilter.add(defaultPrefix);
+        this.defaultPrefix = defaultPrefix;
+        prefixFilter.remove(oldPrefix);
+    }
+
+    @Override
+    public @Nullable String getGuildPrefix(long guildId) {
+        long stamp = lock.tryOptimisticRead();
+        String prefix = lookup(guildId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                prefix = lookup(guildId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return prefix;
+    }
+
+    @Override
+    public void setGuildPrefix(@NotNull String prefix, long guildId) {
+        Objects.requireNonNull(prefix, "prefix");
+        Utils.checkState(!(guildId <= 0), "Guild id cannot be 0 or less than 0");
+        // the new prefix has to pass the filter before it can be looked up
+        prefixFilter.add(prefix);
+        String oldPrefix;
+        long stamp = lock.writeLock();
+        try {
+            oldPrefix = put(guildId, prefix);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        prefixFilter.remove(oldPrefix);
+    }
+
+    @Override
+    public boolean isUserPrefixSupported() {
+        return true;
+    }
+
+    @Override
+    public @Nullable String getUserPrefix(long userId) {
+        return userPrefixes.get(userId);
+    }
+
+    @Override
+    public void setUserPrefix(@NotNull String prefix, long userId) {
+        userPrefixes.set(prefix, userId);
+    }
+
+    @Override
+    public void savePrefixes() {
+        saveFunction.accept(toMap());
+        userPrefixes.save();
+    }
+
+    @Override
+    public boolean mayStartWithPrefix(char firstChar) {
+        return prefixFilter.mayMatch(firstChar);
+    }
+
+    /**
+     * Returns a copy of the guild prefixes as a map.
+     *
+     * @return guild prefixes
+     */
+    @NotNull
+    public Map<Long, String> toMap() {
+        long stamp = lock.readLock();
+        try {
+            Map<Long, String> map = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < guildIds.length; i++) {
+                if (guildIds[i] != 0) {
+                    map.put(guildIds[i], pool[prefixIndexes[i]]);
+                }
+            }
+            return map;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the count of guilds with a prefix set.
+     *
+     * @return guild count
+     */
+    public int getGuildCount() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the count of distinct prefixes the guilds use.
+     *
+     * @return distinct prefixes
+     */
+    public int getDistinctPrefixCount() {
+        long stamp = lock.readLock();
+        try {
+            return poolIndexes.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int slot(long guildId, int mask) {
+        long h = guildId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // may run concurrently with a write, so it has to survive a half written table: the caller validates the result
+    private String lookup(long guildId) {
+        long[] guildIds = this.guildIds;
+        int[] prefixIndexes = this.prefixIndexes;
+        String[] pool = this.pool;
+        if (guildIds.length != prefixIndexes.length) {
+            return null;
+        }
+        int mask = guildIds.length - 1;
+        int slot = slot(guildId, mask);
+        for (int probes = 0; probes < guildIds.length; probes++) {
+            long id = guildIds[slot];
+            if (id == 0) {
+                return null;
+            }
+            if (id == guildId) {
+                int index = prefixIndexes[slot];
+                return index >= 0 && index < pool.length ? pool[index] : null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private String put(long guildId, String prefix) {
+        int index = intern(prefix);
+        int mask = guildIds.length - 1;
+        int slot = slot(guildId, mask);
+        while (guildIds[slot] != 0) {
+            if (guildIds[slot] == guildId) {
+                int oldIndex = prefixIndexes[slot];
+                prefixIndexes[slot] = index;
+                String oldPrefix = pool[oldIndex];
+                release(oldIndex);
+                return oldPrefix;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // the index goes in before the id, so a reader which sees the id sees its index too
+        prefixIndexes[slot] = index;
+        guildIds[slot] = guildId;
+        size++;
+        if (size * 4 > guildIds.length * 3) {
+            resize();
+        }
+        return null;
+    }
+
+    private void resize() {
+        long[] oldIds = guildIds;
+        int[] oldIndexes = prefixIndexes;
+        long[] newIds = new long[oldIds.length << 1];
+        int[] newIndexes = new int[newIds.length];
+        int mask = newIds.length - 1;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != 0) {
+                int slot = slot(oldIds[i], mask);
+                while (newIds[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newIds[slot] = oldIds[i];
+                newIndexes[slot] = oldIndexes[i];
+            }
+        }
+        prefixIndexes = newIndexes;
+        guildIds = newIds;
+    }
+
+    private int intern(String prefix) {
+        Integer present = poolIndexes.get(prefix);
+        int index;
+        if (present != null) {
+            index = present;
+        } else {
+            if (freePoolCount != 0) {
+                index = freePoolIndexes[--freePoolCount];
+            } else {
+                if (poolSize == pool.length) {
+                    pool = Arrays.copyOf(pool, pool.length << 1);
+                    poolReferences = Arrays.copyOf(poolReferences, pool.length);
+                }
+                index = poolSize++;
+            }
+            pool[index] = prefix;
+            poolIndexes.put(prefix, index);
+        }
+        poolReferences[index]++;
+        return index;
+    }
+
+    private void release(int index) {
+        if (--poolReferences[index] != 0) {
+            return;
+        }
+        poolIndexes.remove(pool[index]);
+        pool[index] = null;
+        if (freePoolCount == freePoolIndexes.length) {
+            freePoolIndexes = Arrays.copyOf(freePoolIndexes, freePoolCount << 1);
+        }
+        freePoolIndexes[freePoolCount++] = index;
+    }
+}
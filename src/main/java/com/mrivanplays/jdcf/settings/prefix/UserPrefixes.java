@@ -0,0 +1,163 @@
+package com.mrivanplays.jdcf.settings.prefix;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mrivanplays.jdcf.util.Utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Represents the prefixes users have set for commands in their DMs. Any user can set one, so they are kept apart from
+ * the guild prefixes: they don't go through the guild prefix store, and don't widen its {@link PrefixFilter}. A prefix
+ * should be valid by {@link #isValidPrefix(String)}, and at most a maximum count of users can have one.
+ */
+public final class UserPrefixes {
+
+    /**
+     * The maximum length of a user prefix.
+     */
+    public static final int MAX_PREFIX_LENGTH = 16;
+
+    /**
+     * Loads the user prefixes from the specified json file, saving them back to it.
+     *
+     * @param jsonMapper jackson object mapper
+     * @param file       json file
+     * @param maxUsers   maximum count of users with a prefix
+     * @return user prefixes
+     */
+    @NotNull
+    public static UserPrefixes fromJson(@NotNull ObjectMapper jsonMapper, @NotNull File file, int maxUsers) {
+        Objects.requireNonNull(jsonMapper, "jsonMapper");
+        Objects.requireNonNull(file, "file");
+        Map<Long, String> map = null;
+        if (file.exists()) {
+            try (Reader reader = new FileReader(file)) {
+                map = jsonMapper.readValue(reader, new TypeReference<HashMap<Long, String>>() {
+                });
+            } catch (IOException ignored) {
+            }
+        }
+        return new UserPrefixes(map != null ? map : new HashMap<>(), saveMap -> {
+            try (Writer writer = new FileWriter(file)) {
+                writer.write(jsonMapper.writer().writeValueAsString(saveMap));
+            } catch (IOException ignored) {
+            }
+        }, maxUsers);
+    }
+
+    /**
+     * Returns whenever the specified prefix can be a user prefix: it should not be empty, longer than {@link
+     * #MAX_PREFIX_LENGTH} or contain whitespace.
+     *
+     * @param prefix prefix
+     * @return <code>true</code> if valid, <code>false</code> otherwise
+     */
+    public static boolean isValidPrefix(@Nullable String prefix) {
+        if (prefix == null || prefix.isEmpty() || prefix.length() > MAX_PREFIX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.isWhitespace(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final Map<Long, String> prefixes;
+    private final Consumer<Map<Long, String>> saveFunction;
+    private final int maxUsers;
+
+    /**
+     * Creates new user prefixes, kept in memory only, for at most 10000 users.
+     */
+    public UserPrefixes() {
+        this(new HashMap<>(), map -> {
+        }, 10000);
+    }
+
+    /**
+     * Creates new user prefixes.
+     *
+     * @param prefixesMap  prefixes to start with, invalid ones are dropped
+     * @param saveFunction function, saving the prefixes
+     * @param maxUsers     maximum count of users with a prefix
+     */
+    public UserPrefixes(@NotNull Map<Long, String> prefixesMap, @NotNull Consumer<Map<Long, String>> saveFunction, int maxUsers) {
+        Objects.requireNonNull(prefixesMap, "prefixesMap");
+        Utils.checkState(maxUsers >= 0, "maxUsers cannot be negative");
+        this.saveFunction = Objects.requireNonNull(saveFunction, "saveFunction");
+        this.maxUsers = maxUsers;
+        this.prefixes = new ConcurrentHashMap<>();
+        for (Map.Entry<Long, String> entry : prefixesMap.entrySet()) {
+            if (entry.getKey() != null && entry.getKey() > 0 && isValidPrefix(entry.getValue()) && prefixes.size() < maxUsers) {
+                prefixes.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the prefix of the specified user.
+     *
+     * @param userId the user id
+     * @return user prefix, or null if the user has none
+     */
+    @Nullable
+    public String get(long userId) {
+        return prefixes.get(userId);
+    }
+
+    /**
+     * Sets a new prefix of the specified user.
+     *
+     * @param prefix the prefix you want to set
+     * @param userId the user id for which you want to set the prefix
+     * @throws IllegalArgumentException if the prefix isn't valid, or the maximum count of users already have a prefix
+     */
+    public synchronized void set(@NotNull String prefix, long userId) {
+        Objects.requireNonNull(prefix, "prefix");
+        Utils.checkState(!(userId <= 0), "User id cannot be 0 or less than 0");
+        Utils.checkState(isValidPrefix(prefix), "Invalid user prefix");
+        Utils.checkState(prefixes.containsKey(userId) || prefixes.size() < maxUsers, "Too many users have a prefix");
+        prefixes.put(userId, prefix);
+    }
+
+    /**
+     * Returns whenever the maximum count of users with a prefix is reached, so only they can change their prefix.
+     *
+     * @return <code>true</code> if full, <code>false</code> otherwise
+     */
+    public boolean isFull() {
+        return prefixes.size() >= maxUsers;
+    }
+
+    /**
+     * Returns the count of users with a prefix.
+     *
+     * @return user count
+     */
+    public int getUserCount() {
+        return prefixes.size();
+    }
+
+    /**
+     * Saves the prefixes.
+     */
+    public void save() {
+        saveFunction.accept(new HashMap<>(prefixes));
+    }
+}
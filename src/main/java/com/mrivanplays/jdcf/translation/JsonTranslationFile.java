@@ -37,7 +37,8 @@ public class JsonTranslationFile implements TranslationFile {
 
     @Override
     public @NotNull String getString(String key) {
-        return object.get(key).asText();
+        JsonNode node = object.get(key);
+        return node == null ? "" : node.asText();
     }
 
     @Override
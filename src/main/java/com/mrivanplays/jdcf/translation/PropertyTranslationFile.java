@@ -29,7 +29,7 @@ public class PropertyTranslationFile implements TranslationFile {
 
     @Override
     public @NotNull String getString(String key) {
-        return bundle.getString(key);
+        return bundle.containsKey(key) ? bundle.getString(key) : "";
     }
 
     @Override
@@ -3,38 +3,72 @@ package com.mrivanplays.jdcf.translation;
 import com.mrivanplays.jdcf.util.Utils;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
- * Represents a collector of all known translations.
+ * Represents a collector of all known translations. The translations of each language are loaded on first use and
+ * then shared, with the most recently used languages kept in a bounded cache.
  */
 public class TranslationCollector {
 
-    private static TranslationCollector instance = null;
+    private static final int MAX_CACHED_LANGUAGES = 16;
+
+    // the holder class is initialized on the first getInstance call, which the class loader makes thread safe
+    private static final class InstanceHolder {
+        private static final TranslationCollector INSTANCE = new TranslationCollector();
+    }
 
     public static TranslationCollector getInstance() {
-        if (instance == null) {
-            instance = new TranslationCollector();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
     }
 
     private TranslationCollector() {
     }
 
     private final String[] supportedLanguages = new String[]{"en", "bg"};
+    private final Map<String, Translations> cache = new LinkedHashMap<String, Translations>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Translations> eldest) {
+            if (size() <= MAX_CACHED_LANGUAGES) {
+                return false;
+            }
+            // an evicted language gets loaded again on its next use, so its old translations needn't be reloaded
+            loaded.remove(eldest.getValue());
+            TranslationReloader current = reloader;
+            if (current != null) {
+                current.unwatch(eldest.getValue(), getFileName(eldest.getKey()));
+            }
+            return true;
+        }
+    };
+    private Translations defaultTranslations;
+    // translations of the supported languages handed out, with their file names, to be watched once reloading is enabled
+    private final Map<Translations, String> loaded = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile TranslationReloader reloader;
+    // languages being loaded in the background, so a language is loaded once no matter how many ask for it
+    private final Map<String, CompletableFuture<Translations>> loading = new ConcurrentHashMap<>();
 
     /**
-     * Retrieves the translations of the specified language
+     * Retrieves the translations of the specified language, loading them if they haven't been yet.
      *
      * @param language the language you want to get the translations of
      * @return translations object
@@ -45,19 +79,122 @@ public class TranslationCollector {
         Objects.requireNonNull(language, "language");
         if (!isSupported(language)) {
             return getDefault();
-        } else {
-            String translationFileName = "jdcf_translations_" + language.toLowerCase() + ".properties";
-            File physicalTranslationFile = new File(".", translationFileName);
-            if (physicalTranslationFile.exists()) {
-                try (Reader reader = Files.newBufferedReader(physicalTranslationFile.toPath(), StandardCharsets.UTF_8)) {
-                    return Translations.get(reader, language);
+        }
+        String key = language.toLowerCase();
+        synchronized (cache) {
+            Translations cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // loaded outside of the lock, so a slow first load doesn't hold up the other languages
+        String translationFileName = getFileName(key);
+        Translations translations = load(translationFileName, language);
+        synchronized (cache) {
+            Translations raced = cache.putIfAbsent(key, translations);
+            if (raced != null) {
+                return raced;
+            }
+        }
+        synchronized (this) {
+            loaded.put(translations, translationFileName);
+            if (reloader != null) {
+                reloader.watch(translations, translationFileName);
+            }
+        }
+        return translations;
+    }
+
+    /**
+     * Returns the translations of the specified language, if they're already loaded. Never reads a file.
+     *
+     * @param language the language you want to get the translations of
+     * @return translations, or null if the language isn't supported or hasn't been loaded yet
+     */
+    @Nullable
+    public Translations getLoadedTranslations(@NotNull String language) {
+        Objects.requireNonNull(language, "language");
+        synchronized (cache) {
+            return cache.get(language.toLowerCase());
+        }
+    }
+
+    /**
+     * Loads the translations of the specified language on the specified executor, unless they're already loaded.
+     *
+     * @param language the language you want to get the translations of
+     * @param executor executor to load the translations on
+     * @return future, completed with the translations
+     */
+    @NotNull
+    public CompletableFuture<Translations> getTranslationsAsync(@NotNull String language, @NotNull Executor executor) {
+        Objects.requireNonNull(language, "language");
+        Objects.requireNonNull(executor, "executor");
+        Translations loaded = getLoadedTranslations(language);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(loaded);
+        }
+        String key = language.toLowerCase();
+        CompletableFuture<Translations> future = new CompletableFuture<>();
+        CompletableFuture<Translations> raced = loading.putIfAbsent(key, future);
+        if (raced != null) {
+            return raced;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(getTranslations(language));
+                } catch (IOException e) {
+                    future.completeExceptionally(new UncheckedIOException(e));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    loading.remove(key, future);
                 }
-            } else {
-                try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(translationFileName), StandardCharsets.UTF_8)) {
-                    return Translations.get(reader, language);
+            });
+        } catch (RuntimeException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static String getFileName(String language) {
+        return "jdcf_translations_" + language + ".properties";
+    }
+
+    private Translations load(String translationFileName, String language) throws IOException {
+        File physicalTranslationFile = new File(".", translationFileName);
+        if (physicalTranslationFile.exists()) {
+            try (Reader reader = Files.newBufferedReader(physicalTranslationFile.toPath(), StandardCharsets.UTF_8)) {
+                return Translations.get(reader, language);
+            }
+        } else {
+            try (Reader reader = new InputStreamReader(getClass().getClassLoader().getResourceAsStream(translationFileName), StandardCharsets.UTF_8)) {
+                return Translations.get(reader, language);
+            }
+        }
+    }
+
+    /**
+     * Starts watching the working directory for the translation files of the supported languages. Whenever one is
+     * created or changed, the translations of its language, retrieved from this collector, are reloaded in the
+     * background.
+     *
+     * @return the reloader, watching the working directory
+     * @throws IOException if the directory can't be watched
+     */
+    @NotNull
+    public synchronized TranslationReloader enableHotReload() throws IOException {
+        if (reloader == null) {
+            reloader = new TranslationReloader(Paths.get("."));
+            synchronized (loaded) {
+                for (Map.Entry<Translations, String> entry : loaded.entrySet()) {
+                    reloader.watch(entry.getKey(), entry.getValue());
                 }
             }
         }
+        return reloader;
     }
 
     /**
@@ -81,9 +218,12 @@ public class TranslationCollector {
         return Arrays.copyOf(supportedLanguages, supportedLanguages.length);
     }
 
-    private Translations getDefault() throws IOException {
-        try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdcf_translations_en.properties")) {
-            return Translations.get(in, "en");
+    private synchronized Translations getDefault() throws IOException {
+        if (defaultTranslations == null) {
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdcf_translations_en.properties")) {
+                defaultTranslations = Translations.get(in, "en");
+            }
         }
+        return defaultTranslations;
     }
 }
@@ -0,0 +1,155 @@
+package com.mrivanplays.jdcf.translation;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A translation pattern, parsed once. Formats like {@link MessageFormat#format(String, Object...)} does, but patterns
+ * using only plain <code>{n}</code> arguments are split into literals and argument indexes up front, so formatting
+ * them is only appending. Patterns with format types, like <code>{0,number,#}</code>, keep a compiled {@link
+ * MessageFormat}. Immutable, and so safe to share between threads.
+ */
+final class TranslationFormat {
+
+    // NumberFormat and DateFormat aren't thread safe
+    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(
+            () -> NumberFormat.getInstance(Locale.getDefault(Locale.Category.FORMAT)));
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = ThreadLocal.withInitial(
+            () -> DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT, Locale.getDefault(Locale.Category.FORMAT)));
+
+    private final String pattern;
+    private final String[] literals;
+    private final int[] arguments;
+    private final MessageFormat messageFormat;
+    private final String withoutArguments;
+
+    private TranslationFormat(String pattern, String[] literals, int[] arguments, MessageFormat messageFormat) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.arguments = arguments;
+        this.messageFormat = messageFormat;
+        this.withoutArguments = messageFormat != null ? messageFormat.format(new Object[0]) : formatArguments(new Object[0]);
+    }
+
+    /**
+     * Parses the specified pattern.
+     *
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    static TranslationFormat compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(pattern.length());
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    literal.append('\'');
+                    i += 2;
+                } else {
+                    quoted = !quoted;
+                    i++;
+                }
+                continue;
+            }
+            if (c == '{' && !quoted) {
+                int close = pattern.indexOf('}', i + 1);
+                int argument = close < 0 ? -1 : parseArgument(pattern, i + 1, close);
+                if (argument < 0) {
+                    // a format type, or something invalid, which MessageFormat can tell us about
+                    return new TranslationFormat(pattern, null, null, new MessageFormat(pattern));
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                arguments.add(argument);
+                i = close + 1;
+                continue;
+            }
+            literal.append(c);
+            i++;
+        }
+        literals.add(literal.toString());
+        int[] argumentArray = new int[arguments.size()];
+        for (int j = 0; j < argumentArray.length; j++) {
+            argumentArray[j] = arguments.get(j);
+        }
+        return new TranslationFormat(pattern, literals.toArray(new String[0]), argumentArray, null);
+    }
+
+    /**
+     * Returns the pattern, as it was given.
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Formats the pattern with the specified arguments.
+     */
+    String format(Object[] args) {
+        if (args.length == 0) {
+            return withoutArguments;
+        }
+        if (messageFormat != null) {
+            return ((MessageFormat) messageFormat.clone()).format(args);
+        }
+        return formatArguments(args);
+    }
+
+    private String formatArguments(Object[] args) {
+        if (arguments.length == 0) {
+            return literals[0];
+        }
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            builder.append(literals[i]);
+            int argument = arguments[i];
+            if (argument >= args.length) {
+                builder.append('{').append(argument).append('}');
+            } else {
+                appendArgument(builder, args[argument]);
+            }
+        }
+        return builder.append(literals[arguments.length]).toString();
+    }
+
+    // the same as MessageFormat does for an argument without a format type
+    private static void appendArgument(StringBuilder builder, Object argument) {
+        if (argument == null) {
+            builder.append("null");
+        } else if (argument instanceof Number) {
+            builder.append(NUMBER_FORMAT.get().format(argument));
+        } else if (argument instanceof Date) {
+            builder.append(DATE_FORMAT.get().format(argument));
+        } else {
+            builder.append(argument);
+        }
+    }
+
+    /**
+     * Parses the index of a plain argument.
+     *
+     * @return the index, or -1 if it isn't a plain argument
+     */
+    private static int parseArgument(String pattern, int from, int to) {
+        if (to == from || to - from > 9) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = from; i < to; i++) {
+            char c = pattern.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+}
@@ -0,0 +1,180 @@
+package com.mrivanplays.jdcf.translation;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Represents a watcher of a directory with translation files. When a watched file changes, it is parsed on the
+ * watcher's own thread and then swapped in the {@link Translations} using it, so formatting never waits for the file to
+ * be read. A file which fails to parse is logged and the translations keep the previous one. Watched translations are
+ * only weakly referenced, so translations nothing else uses anymore stop being reloaded.
+ */
+public final class TranslationReloader implements AutoCloseable {
+
+    // editors often write a file in several steps, so changes are picked up once the file settles
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Map<String, List<WeakReference<Translations>>> watched = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(TranslationReloader.class);
+
+    /**
+     * Starts watching the specified directory.
+     *
+     * @param directory directory with translation files
+     * @throws IOException if the directory can't be watched
+     */
+    public TranslationReloader(@NotNull Path directory) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory").toAbsolutePath();
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        this.directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::run, "JDCF translation reloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Reloads the specified translations whenever the specified file in the watched directory is created or changed.
+     * Files ending with ".json" are parsed as a {@link JsonTranslationFile}, everything else as a {@link
+     * PropertyTranslationFile}.
+     *
+     * @param translations translations to reload
+     * @param fileName     name of the translation file
+     */
+    public void watch(@NotNull Translations translations, @NotNull String fileName) {
+        Objects.requireNonNull(translations, "translations");
+        Objects.requireNonNull(fileName, "fileName");
+        watched.computeIfAbsent(fileName, name -> new CopyOnWriteArrayList<>()).add(new WeakReference<>(translations));
+    }
+
+    /**
+     * Stops reloading the specified translations with the specified file.
+     *
+     * @param translations translations to no longer reload
+     * @param fileName     name of the translation file
+     */
+    public void unwatch(@NotNull Translations translations, @NotNull String fileName) {
+        Objects.requireNonNull(translations, "translations");
+        Objects.requireNonNull(fileName, "fileName");
+        List<WeakReference<Translations>> references = watched.get(fileName);
+        if (references != null) {
+            references.removeIf(reference -> {
+                Translations referent = reference.get();
+                return referent == null || referent == translations;
+            });
+        }
+    }
+
+    /**
+     * Reloads the translations, watching the specified file, right away.
+     *
+     * @param fileName name of the translation file
+     * @return <code>true</code> if the file was reloaded, <code>false</code> if nothing watches it, it doesn't exist or
+     * it couldn't be parsed
+     */
+    public boolean reload(@NotNull String fileName) {
+        Objects.requireNonNull(fileName, "fileName");
+        List<Translations> translations = getWatching(fileName);
+        Path file = directory.resolve(fileName);
+        if (translations.isEmpty() || !Files.isRegularFile(file)) {
+            return false;
+        }
+        TranslationFile translationFile;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            translationFile = fileName.endsWith(".json") ? new JsonTranslationFile(reader) : new PropertyTranslationFile(reader);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not reload translation file " + file + ", keeping the previous one", e);
+            return false;
+        }
+        for (Translations translation : translations) {
+            translation.reload(translationFile);
+        }
+        logger.info("Reloaded translation file " + file);
+        return true;
+    }
+
+    private List<Translations> getWatching(String fileName) {
+        List<WeakReference<Translations>> references = watched.get(fileName);
+        if (references == null) {
+            return new ArrayList<>();
+        }
+        List<Translations> translations = new ArrayList<>(references.size());
+        boolean collected = false;
+        for (WeakReference<Translations> reference : references) {
+            Translations referent = reference.get();
+            if (referent != null) {
+                translations.add(referent);
+            } else {
+                collected = true;
+            }
+        }
+        if (collected) {
+            references.removeIf(reference -> reference.get() == null);
+        }
+        return translations;
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey key;
+                while ((key = watchService.poll()) != null) {
+                    collect(key, changed);
+                }
+                for (String fileName : changed) {
+                    reload(fileName);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, so anything might have changed
+                changed.addAll(watched.keySet());
+                continue;
+            }
+            String fileName = ((Path) event.context()).getFileName().toString();
+            if (watched.containsKey(fileName)) {
+                changed.add(fileName);
+            }
+        }
+        key.reset();
+    }
+}
@@ -6,25 +6,27 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.Objects;
 import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Represents a class, holding translations for a specific language.
+ * Represents a class, holding translations for a specific language. The translation file can be replaced while the
+ * translations are in use, see {@link #reload(TranslationFile)}.
  */
 public class Translations {
 
-    private TranslationFile translationFile;
+    private volatile Snapshot snapshot;
     private String language;
 
     private Translations(TranslationFile translationFile, String language) {
-        this.translationFile = translationFile;
+        this.snapshot = new Snapshot(translationFile, 0);
         this.language = language;
     }
 
@@ -82,12 +84,46 @@ public class Translations {
     @NotNull
     public String getTranslation(@NotNull String key, @Nullable Object... args) {
         Objects.requireNonNull(key, "key");
-        String translation = String.format("Translation [%s][%s] does not exist", language, key);
-        String bundle = translationFile.getString(key);
-        if (!bundle.isEmpty()) {
-            translation = bundle;
+        // a single read, so a reload in the middle can't mix two files
+        Snapshot snapshot = this.snapshot;
+        TranslationFormat format = snapshot.formats.get(key);
+        if (format == null) {
+            // missing keys are cached as well, with the message saying so
+            format = snapshot.formats.computeIfAbsent(key, k -> compile(snapshot.translationFile, k));
+        }
+        return args == null ? format.getPattern() : format.format(args);
+    }
+
+    private TranslationFormat compile(TranslationFile translationFile, String key) {
+        String translation = translationFile.getString(key);
+        if (translation.isEmpty()) {
+            translation = "Translation [" + language + "][" + key + "] does not exist";
+        }
+        return TranslationFormat.compile(translation);
+    }
+
+    /**
+     * Replaces the translation file. The new file should be fully loaded already: formatting in progress finishes with
+     * the old file, and everything after this uses the new one.
+     *
+     * @param translationFile new translation file
+     * @see TranslationReloader
+     */
+    public void reload(@NotNull TranslationFile translationFile) {
+        Objects.requireNonNull(translationFile, "translationFile");
+        synchronized (this) {
+            snapshot = new Snapshot(translationFile, snapshot.version + 1);
         }
-        return args == null ? translation : MessageFormat.format(translation, args);
+    }
+
+    /**
+     * Returns how many times the translation file was replaced. Useful to tell whenever something made out of the
+     * translations is out of date.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return snapshot.version;
     }
 
     /**
@@ -97,7 +133,7 @@ public class Translations {
      */
     @NotNull
     public Collection<String> getKeys() {
-        return translationFile.getKeys();
+        return snapshot.translationFile.getKeys();
     }
 
     /**
@@ -107,7 +143,7 @@ public class Translations {
      */
     @NotNull
     public String getTranslationFileType() {
-        return translationFile.getFileType();
+        return snapshot.translationFile.getFileType();
     }
 
     /**
@@ -119,4 +155,17 @@ public class Translations {
     public String getLanguage() {
         return language;
     }
+
+    // a translation file with the formats compiled out of it, replaced as a whole
+    private static final class Snapshot {
+
+        private final TranslationFile translationFile;
+        private final long version;
+        private final Map<String, TranslationFormat> formats = new ConcurrentHashMap<>();
+
+        private Snapshot(TranslationFile translationFile, long version) {
+            this.translationFile = translationFile;
+            this.version = version;
+        }
+    }
 }
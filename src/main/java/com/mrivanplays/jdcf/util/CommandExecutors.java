@@ -0,0 +1,36 @@
+package com.mrivanplays.jdcf.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory of executors for asynchronously executed commands. JDCF is shipped as a multi-release jar: on Java 21 and
+ * newer a different version of this class is loaded, which uses virtual threads.
+ */
+public final class CommandExecutors {
+
+    private CommandExecutors() {
+    }
+
+    /**
+     * Returns whenever the running JVM supports virtual threads.
+     *
+     * @return <code>true</code> if supported, <code>false</code> otherwise
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return false;
+    }
+
+    /**
+     * Creates the default command executor: a thread pool, sized to the available processors. On Java 21 and newer
+     * every task runs on its own virtual thread instead, see {@link #isVirtualThreadsSupported()}.
+     *
+     * @return command executor
+     */
+    @NotNull
+    public static ExecutorService newDefaultExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,167 @@
+package com.mrivanplays.jdcf.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a lock-free limit of how many tasks may run at the same time, with a bounded queue for tasks waiting for
+ * their turn. A task either acquires a permit and runs on the calling thread, or gets queued and runs on the executor it
+ * was queued with as soon as a permit is released. If that executor rejects the task, the task is dropped and its
+ * rejection callback is ran instead; releasing a permit never throws.
+ */
+public final class ConcurrencyLimiter {
+
+    private final int permits;
+    private final int queueCapacity;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Queue<QueuedTask> queue = new ConcurrentLinkedQueue<>();
+    private final Logger logger = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    /**
+     * Creates a new concurrency limiter.
+     *
+     * @param permits       maximum count of tasks running at the same time
+     * @param queueCapacity maximum count of tasks waiting for a permit
+     */
+    public ConcurrencyLimiter(int permits, int queueCapacity) {
+        Utils.checkState(permits > 0, "permits should be positive");
+        Utils.checkState(queueCapacity >= 0, "queueCapacity cannot be negative");
+        this.permits = permits;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Tries to acquire a permit. Every acquired permit should be given back by {@link #release()}.
+     *
+     * @return <code>true</code> if acquired, <code>false</code> if all permits are taken
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = running.get();
+            if (current >= permits) {
+                return false;
+            }
+            if (running.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit, handing it to the next queued task if there is one.
+     */
+    public void release() {
+        running.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Queues the specified task to run once a permit is available.
+     *
+     * @param task     task
+     * @param executor executor to run the task on, once it gets a permit
+     * @return <code>true</code> if queued, <code>false</code> if the queue is full
+     */
+    public boolean offer(@NotNull Runnable task, @NotNull Executor executor) {
+        return offer(task, executor, null);
+    }
+
+    /**
+     * Queues the specified task to run once a permit is available.
+     *
+     * @param task       task
+     * @param executor   executor to run the task on, once it gets a permit
+     * @param onRejected callback, ran instead of the task if the executor rejects it
+     * @return <code>true</code> if queued, <code>false</code> if the queue is full
+     */
+    public boolean offer(@NotNull Runnable task, @NotNull Executor executor, @Nullable Runnable onRejected) {
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(executor, "executor");
+        while (true) {
+            int current = queued.get();
+            if (current >= queueCapacity) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        queue.add(new QueuedTask(task, executor, onRejected));
+        // a permit may have been released before the task got in the queue
+        drain();
+        return true;
+    }
+
+    /**
+     * Returns the count of tasks currently running.
+     *
+     * @return running tasks
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * Returns the count of tasks currently waiting for a permit.
+     *
+     * @return queued tasks
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            QueuedTask task = queue.poll();
+            if (task == null) {
+                // another thread took the task
+                running.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                task.executor.execute(() -> {
+                    try {
+                        task.task.run();
+                    } finally {
+                        release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // this may run in the finally block of another task, so the rejection can't be thrown from here
+                running.decrementAndGet();
+                logger.warn("Queued task rejected by its executor, dropping it", e);
+                if (task.onRejected != null) {
+                    try {
+                        task.onRejected.run();
+                    } catch (Throwable t) {
+                        logger.error("Error encountered while handling a rejected task", t);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class QueuedTask {
+
+        private final Runnable task;
+        private final Executor executor;
+        private final Runnable onRejected;
+
+        QueuedTask(Runnable task, Executor executor, Runnable onRejected) {
+            this.task = task;
+            this.executor = executor;
+            this.onRejected = onRejected;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mrivanplays.jdcf.util;
+
+import com.mrivanplays.jdcf.data.CooldownScope;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a token bucket per snowflake id, used to put commands on cooldown. Every bucket is a single long, the
+ * time at which it will be full again (the generic cell rate algorithm), kept in striped open addressing tables of
+ * primitive longs. Full buckets hold no information, so they're dropped whenever a table would grow.
+ */
+public final class CooldownLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final CooldownScope scope;
+    private final long interval;
+    private final long burst;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Creates a new cooldown limiter.
+     *
+     * @param scope what the cooldown is counted for
+     * @param uses  count of uses allowed per period
+     * @param per   period
+     * @param unit  unit of the period
+     */
+    public CooldownLimiter(@NotNull CooldownScope scope, int uses, long per, @NotNull TimeUnit unit) {
+        this.scope = Objects.requireNonNull(scope, "scope");
+        Objects.requireNonNull(unit, "unit");
+        Utils.checkState(uses > 0, "uses should be positive");
+        Utils.checkState(per > 0, "per should be positive");
+        long period = unit.toNanos(per);
+        this.interval = Math.max(1, period / uses);
+        this.burst = interval * (uses - 1);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Returns what the cooldown is counted for.
+     *
+     * @return scope
+     */
+    @NotNull
+    public CooldownScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Takes a use from the bucket of the specified id, if there is one left.
+     *
+     * @param id snowflake id of the user, guild or channel, depending on the {@link #getScope() scope}
+     * @return 0 if a use was taken, otherwise the nanoseconds until the next use is available
+     */
+    public long tryAcquire(long id) {
+        Utils.checkState(id != 0, "id cannot be 0");
+        int hash = hash(id);
+        return stripes[hash >>> 28].acquire(id, hash, System.nanoTime());
+    }
+
+    /**
+     * Gives back a use, which {@link #tryAcquire(long)} took from the bucket of the specified id, e.g. because the
+     * command got rejected for another reason after all.
+     *
+     * @param id snowflake id the use was taken for
+     */
+    public void refund(long id) {
+        Utils.checkState(id != 0, "id cannot be 0");
+        int hash = hash(id);
+        stripes[hash >>> 28].refund(id, hash);
+    }
+
+    /**
+     * Returns the count of buckets currently stored. Includes full buckets which weren't dropped yet.
+     *
+     * @return bucket count
+     */
+    public int getBucketCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size();
+        }
+        return count;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private final class Stripe {
+
+        // key 0 marks a free slot, snowflakes are never 0
+        private long[] ids = new long[16];
+        private long[] fullAt = new long[16];
+        private int size;
+
+        synchronized long acquire(long id, int hash, long now) {
+            int mask = ids.length - 1;
+            int slot = hash & mask;
+            while (ids[slot] != 0) {
+                if (ids[slot] == id) {
+                    long at = fullAt[slot];
+                    long wait = at - burst - now;
+                    if (wait > 0) {
+                        return wait;
+                    }
+                    fullAt[slot] = (at - now > 0 ? at : now) + interval;
+                    return 0;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // no bucket means a full one, the first use is always allowed
+            if ((size + 1) * 4 > ids.length * 3) {
+                rebuild(now);
+                insert(id, hash, now + interval);
+            } else {
+                ids[slot] = id;
+                fullAt[slot] = now + interval;
+                size++;
+            }
+            return 0;
+        }
+
+        synchronized void refund(long id, int hash) {
+            int mask = ids.length - 1;
+            int slot = hash & mask;
+            while (ids[slot] != 0) {
+                if (ids[slot] == id) {
+                    // a bucket full before now stays full, see acquire
+                    fullAt[slot] -= interval;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // the bucket got dropped, so it is full already
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void rebuild(long now) {
+            long[] oldIds = ids;
+            long[] oldFullAt = fullAt;
+            int live = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0 && oldFullAt[i] - now > 0) {
+                    live++;
+                }
+            }
+            // leave the table half empty, so the next rebuild is as far away as the table is big
+            int capacity = 16;
+            while (capacity < (live + 1) * 2) {
+                capacity <<= 1;
+            }
+            ids = new long[capacity];
+            fullAt = new long[capacity];
+            size = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != 0 && oldFullAt[i] - now > 0) {
+                    insert(oldIds[i], hash(oldIds[i]), oldFullAt[i]);
+                }
+            }
+        }
+
+        private void insert(long id, int hash, long at) {
+            int mask = ids.length - 1;
+            int slot = hash & mask;
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            fullAt[slot] = at;
+            size++;
+        }
+    }
+}
@@ -2,86 +2,448 @@ package com.mrivanplays.jdcf.util;
 
 import net.dv8tion.jda.api.events.Event;
 import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GenericGuildMessageReactionEvent;
+import net.dv8tion.jda.api.events.message.priv.PrivateMessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
 import net.dv8tion.jda.api.hooks.EventListener;
 import net.dv8tion.jda.api.hooks.SubscribeEvent;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.ToLongFunction;
 
 /**
  * Took from JDA utilities in order to fix some concurrency issues
  *
+ * <p>Timeouts of waits are kept on a {@link TimerWheel}, advanced once per second on the threadpool, instead of a
+ * task per wait. Waits can be registered under a routing key, such as the id of the message reactions are waited on,
+ * so an event only tests the waits registered under its own key.
+ *
  * @author John Grosh (jagrosh)
  */
 public class EventWaiter implements EventListener {
-    private final Map<Class<?>, Set<WaitingEvent>> waitingEvents;
+
+    /**
+     * The timeout of waits, which don't specify one.
+     */
+    public static final long DEFAULT_TIMEOUT_MINUTES = 5;
+
+    // event class -> its superclass chain, walked for every event
+    private static final ClassValue<Class<?>[]> EVENT_HIERARCHY = new ClassValue<Class<?>[]>() {
+        @Override
+        protected Class<?>[] computeValue(Class<?> type) {
+            List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                hierarchy.add(c);
+            }
+            return hierarchy.toArray(new Class<?>[0]);
+        }
+    };
+
+    private final Map<Class<?>, ClassWaits> waitingEvents;
+    private final Map<Class<?>, ToLongFunction<?>> keyExtractors;
     private final ScheduledExecutorService threadpool;
+    private final TimerWheel timeouts;
+    private final AtomicBoolean ticking = new AtomicBoolean();
+    private final Logger logger = LoggerFactory.getLogger(EventWaiter.class);
 
     public EventWaiter(ScheduledExecutorService threadpool) {
+        this(threadpool, System::nanoTime);
+    }
+
+    /**
+     * Creates a new event waiter, measuring timeouts with the specified clock.
+     *
+     * @param threadpool threadpool, running timeout actions
+     * @param clock      clock, returning the current time in nanoseconds
+     */
+    public EventWaiter(ScheduledExecutorService threadpool, LongSupplier clock) {
         Objects.requireNonNull(threadpool, "ScheduledExecutorService");
+        Objects.requireNonNull(clock, "clock");
         Utils.checkState(!threadpool.isShutdown(), "Cannot construct EventWaiter with a closed ScheduledExecutorService!");
 
-        this.waitingEvents = new HashMap<>();
+        this.waitingEvents = new ConcurrentHashMap<>();
+        this.keyExtractors = new ConcurrentHashMap<>();
+        registerKeyExtractor(GenericMessageReactionEvent.class, GenericMessageReactionEvent::getMessageIdLong);
+        registerKeyExtractor(GenericGuildMessageReactionEvent.class, GenericGuildMessageReactionEvent::getMessageIdLong);
+        registerKeyExtractor(MessageReceivedEvent.class,
+                event -> channelUserKey(event.getChannel().getIdLong(), event.getAuthor().getIdLong()));
+        registerKeyExtractor(GuildMessageReceivedEvent.class,
+                event -> channelUserKey(event.getChannel().getIdLong(), event.getAuthor().getIdLong()));
+        registerKeyExtractor(PrivateMessageReceivedEvent.class,
+                event -> channelUserKey(event.getChannel().getIdLong(), event.getAuthor().getIdLong()));
         this.threadpool = threadpool;
+        // one second ticks, one bucket per second of the default timeout
+        this.timeouts = new TimerWheel(1, TimeUnit.SECONDS, (int) TimeUnit.MINUTES.toSeconds(DEFAULT_TIMEOUT_MINUTES), clock);
     }
 
     public <T extends Event> void waitForEvent(Class<T> classType, Predicate<T> condition, Consumer<T> action, Runnable timeoutAction) {
+        awaitEvent(classType, condition, action, DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES, timeoutAction);
+    }
+
+    /**
+     * Waits for an event of the specified type, matching the specified condition.
+     *
+     * @param classType     type of the event
+     * @param condition     condition the event should match
+     * @param action        action, ran with the first event matching
+     * @param timeout       time to wait for the event
+     * @param unit          unit of the timeout
+     * @param timeoutAction action, ran if no event matched in time
+     * @param <T>           event type
+     * @see #awaitEvent(Class, Predicate, Consumer, long, TimeUnit, Runnable)
+     */
+    public <T extends Event> void waitForEvent(Class<T> classType, Predicate<T> condition, Consumer<T> action,
+                                               long timeout, TimeUnit unit, Runnable timeoutAction) {
+        awaitEvent(classType, condition, action, timeout, unit, timeoutAction);
+    }
+
+    public <T extends Event> WaitHandle awaitEvent(Class<T> classType, Predicate<T> condition, Consumer<T> action, Runnable timeoutAction) {
+        return awaitEvent(classType, condition, action, DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES, timeoutAction);
+    }
+
+    /**
+     * Waits for an event of the specified type, matching the specified condition, like {@link #waitForEvent(Class,
+     * Predicate, Consumer, long, TimeUnit, Runnable)}, but returns a handle to the wait.
+     *
+     * @param classType     type of the event
+     * @param condition     condition the event should match
+     * @param action        action, ran with the first event matching
+     * @param timeout       time to wait for the event
+     * @param unit          unit of the timeout
+     * @param timeoutAction action, ran if no event matched in time
+     * @param <T>           event type
+     * @return handle, which can cancel the wait
+     */
+    public <T extends Event> WaitHandle awaitEvent(Class<T> classType, Predicate<T> condition, Consumer<T> action,
+                                                   long timeout, TimeUnit unit, Runnable timeoutAction) {
         Utils.checkState(!threadpool.isShutdown(), "Attempted to register a WaitingEvent while the EventWaiter's threadpool was already shut down!");
         Objects.requireNonNull(classType, "The provided class type");
         Objects.requireNonNull(condition, "The provided condition predicate");
         Objects.requireNonNull(action, "The provided action consumer");
+        Objects.requireNonNull(unit, "The provided time unit");
 
-        WaitingEvent we = new WaitingEvent<>(condition, action);
-        Set<WaitingEvent> set = waitingEvents.computeIfAbsent(classType, c -> new HashSet<>());
-        set.add(we);
+        WaitingEvent<T> we = new WaitingEvent<>(getClassWaits(classType), false, 0, false, condition, action);
+        return register(we, timeout, unit, timeoutAction);
+    }
+
+    public <T extends Event> WaitHandle waitForEvent(Class<T> classType, long key, Predicate<T> condition, Consumer<T> action, Runnable timeoutAction) {
+        return waitForEvent(classType, key, condition, action, DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES, timeoutAction);
+    }
 
-        threadpool.schedule(() -> {
-            if (set.remove(we) && timeoutAction != null)
+    /**
+     * Waits for an event of the specified type with the specified routing key, matching the specified condition. Events
+     * with other keys don't test the condition at all. The key of an event is taken by the key extractor registered for
+     * the event type, or any of its supertypes.
+     *
+     * @param classType     type of the event
+     * @param key           routing key, e.g. the message id for reaction events, or {@link #channelUserKey(long,
+     *                      long)} for message events
+     * @param condition     condition the event should match
+     * @param action        action, ran with the first event matching
+     * @param timeout       time to wait for the event
+     * @param unit          unit of the timeout
+     * @param timeoutAction action, ran if no event matched in time
+     * @param <T>           event type
+     * @return handle, which can cancel the wait
+     * @throws IllegalArgumentException if there is no key extractor for the event type
+     * @see #registerKeyExtractor(Class, ToLongFunction)
+     */
+    public <T extends Event> WaitHandle waitForEvent(Class<T> classType, long key, Predicate<T> condition, Consumer<T> action,
+                                                     long timeout, TimeUnit unit, Runnable timeoutAction) {
+        Utils.checkState(!threadpool.isShutdown(), "Attempted to register a WaitingEvent while the EventWaiter's threadpool was already shut down!");
+        Objects.requireNonNull(classType, "The provided class type");
+        Objects.requireNonNull(condition, "The provided condition predicate");
+        Objects.requireNonNull(action, "The provided action consumer");
+        Objects.requireNonNull(unit, "The provided time unit");
+        ClassWaits classWaits = getClassWaits(classType);
+        Utils.checkState(classWaits.keyExtractor != null, "No key extractor registered for " + classType.getName());
+
+        WaitingEvent<T> we = new WaitingEvent<>(classWaits, true, key, false, condition, action);
+        return register(we, timeout, unit, timeoutAction);
+    }
+
+    /**
+     * Listens for all events of the specified type with the specified routing key, matching the specified condition,
+     * until the returned handle is cancelled. Unlike waits, a listener doesn't end with the first matching event, and
+     * has no timeout.
+     *
+     * @param classType type of the event
+     * @param key       routing key
+     * @param condition condition the events should match
+     * @param action    action, ran with every event matching
+     * @param <T>       event type
+     * @return handle, which cancels the listener
+     * @throws IllegalArgumentException if there is no key extractor for the event type
+     */
+    public <T extends Event> WaitHandle listenForEvents(Class<T> classType, long key, Predicate<T> condition, Consumer<T> action) {
+        Objects.requireNonNull(classType, "The provided class type");
+        Objects.requireNonNull(condition, "The provided condition predicate");
+        Objects.requireNonNull(action, "The provided action consumer");
+        ClassWaits classWaits = getClassWaits(classType);
+        Utils.checkState(classWaits.keyExtractor != null, "No key extractor registered for " + classType.getName());
+
+        WaitingEvent<T> we = new WaitingEvent<>(classWaits, true, key, true, condition, action);
+        we.register();
+        return we;
+    }
+
+    private WaitHandle register(WaitingEvent<?> we, long timeout, TimeUnit unit, Runnable timeoutAction) {
+        we.register();
+        we.timeout = timeouts.schedule(() -> {
+            if (we.finish() && timeoutAction != null) {
                 timeoutAction.run();
-        }, 5, TimeUnit.MINUTES);
+            }
+        }, timeout, unit);
+        if (we.isDone()) {
+            // an event came before the timeout got scheduled
+            we.timeout.cancel();
+        }
+        startTicking();
+        return we;
+    }
+
+    /**
+     * Registers a function, which takes the routing key out of events of the specified type and its subtypes. Should be
+     * registered before any waits for the type. Extractors for reaction events (message id) and message received
+     * events ({@link #channelUserKey(long, long)}) are registered by default.
+     *
+     * @param classType    type of the event
+     * @param keyExtractor key extractor
+     * @param <T>          event type
+     */
+    public <T extends GenericEvent> void registerKeyExtractor(Class<T> classType, ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(classType, "The provided class type");
+        Objects.requireNonNull(keyExtractor, "The provided key extractor");
+        keyExtractors.put(classType, keyExtractor);
+    }
+
+    /**
+     * Creates the routing key of message events, by the channel and the author of the message.
+     *
+     * @param channelId channel id
+     * @param userId    author id
+     * @return routing key
+     */
+    public static long channelUserKey(long channelId, long userId) {
+        // collisions only cost a predicate test, the conditions still decide
+        return channelId * 0x9E3779B97F4A7C15L + userId;
+    }
+
+    /**
+     * Schedules the specified task on the timer wheel, keeping the timeouts of the waits. The task runs on the
+     * threadpool, within a second after it is due.
+     *
+     * @param task  task
+     * @param delay delay
+     * @param unit  unit of the delay
+     * @return timeout, which can cancel the task
+     */
+    public TimerWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Utils.checkState(!threadpool.isShutdown(), "Attempted to schedule a task while the EventWaiter's threadpool was already shut down!");
+        TimerWheel.Timeout timeout = timeouts.schedule(task, delay, unit);
+        startTicking();
+        return timeout;
+    }
+
+    /**
+     * Returns the timer wheel, keeping the timeouts of the waits. Advancing it runs the timeouts, which are due on its
+     * clock. Tasks should be scheduled through {@link #schedule(Runnable, long, TimeUnit)}, as the wheel only gets
+     * advanced on the threadpool once something was scheduled through this waiter.
+     *
+     * @return timeouts
+     */
+    public TimerWheel getTimeouts() {
+        return timeouts;
+    }
+
+    private void startTicking() {
+        if (!ticking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            threadpool.scheduleAtFixedRate(() -> {
+                try {
+                    timeouts.advance();
+                } catch (Throwable e) {
+                    logger.error("Error encountered while running a timeout action", e);
+                }
+            }, 1, 1, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            ticking.set(false);
+            throw e;
+        }
     }
 
     @Override
     @SubscribeEvent
     @SuppressWarnings("unchecked")
     public final void onEvent(GenericEvent event) {
-        Class c = event.getClass();
+        for (Class<?> c : EVENT_HIERARCHY.get(event.getClass())) {
+            ClassWaits classWaits = waitingEvents.get(c);
+            if (classWaits != null) {
+                classWaits.attempt(event);
+            }
+        }
+    }
+
+    private ClassWaits getClassWaits(Class<?> classType) {
+        return waitingEvents.computeIfAbsent(classType, type -> {
+            ToLongFunction<?> keyExtractor = null;
+            for (Class<?> c : EVENT_HIERARCHY.get(type)) {
+                keyExtractor = keyExtractors.get(c);
+                if (keyExtractor != null) {
+                    break;
+                }
+            }
+            return new ClassWaits(keyExtractor);
+        });
+    }
 
-        while (c != null) {
-            if (waitingEvents.containsKey(c)) {
-                Set<WaitingEvent> set = waitingEvents.get(c);
-                WaitingEvent[] toRemove = set.toArray(new WaitingEvent[set.size()]);
+    /**
+     * The waits for a single event class.
+     */
+    private static final class ClassWaits {
+        final ToLongFunction keyExtractor;
+        final Set<WaitingEvent> unkeyed = ConcurrentHashMap.newKeySet();
+        // every key has only a few waits, so copy on write sets are cheap and safe to iterate
+        final Map<Long, Set<WaitingEvent>> keyed = new ConcurrentHashMap<>();
 
-                set.removeAll(Stream.of(toRemove).filter(i -> i.attempt(event)).collect(Collectors.toSet()));
+        ClassWaits(ToLongFunction<?> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+
+        @SuppressWarnings("unchecked")
+        void attempt(GenericEvent event) {
+            for (WaitingEvent we : unkeyed) {
+                we.attempt(event);
+            }
+            if (keyExtractor != null && !keyed.isEmpty()) {
+                Set<WaitingEvent> set = keyed.get(keyExtractor.applyAsLong(event));
+                if (set != null) {
+                    for (WaitingEvent we : set) {
+                        we.attempt(event);
+                    }
+                }
             }
-            c = c.getSuperclass();
         }
     }
 
-    private class WaitingEvent<T extends GenericEvent> {
+    /**
+     * Represents a handle of a wait, registered in a {@link EventWaiter}.
+     */
+    public interface WaitHandle {
+
+        /**
+         * Cancels the wait. Neither the action nor the timeout action will run.
+         *
+         * @return <code>true</code> if cancelled, <code>false</code> if the wait was already done
+         */
+        boolean cancel();
+
+        /**
+         * Returns whenever the wait is done, by either an event matching, timing out or being cancelled.
+         *
+         * @return <code>true</code> if done, <code>false</code> otherwise
+         */
+        boolean isDone();
+    }
+
+    private static class WaitingEvent<T extends GenericEvent> implements WaitHandle {
+        final ClassWaits owner;
+        final boolean keyed;
+        final long key;
+        // listeners run for every matching event until cancelled
+        final boolean repeat;
         final Predicate<T> condition;
         final Consumer<T> action;
+        final AtomicBoolean done = new AtomicBoolean();
+        volatile TimerWheel.Timeout timeout;
 
-        WaitingEvent(Predicate<T> condition, Consumer<T> action) {
+        WaitingEvent(ClassWaits owner, boolean keyed, long key, boolean repeat, Predicate<T> condition, Consumer<T> action) {
+            this.owner = owner;
+            this.keyed = keyed;
+            this.key = key;
+            this.repeat = repeat;
             this.condition = condition;
             this.action = action;
         }
 
-        boolean attempt(T event) {
-            if (condition.test(event)) {
+        void register() {
+            if (!keyed) {
+                owner.unkeyed.add(this);
+                return;
+            }
+            owner.keyed.compute(key, (k, set) -> {
+                if (set == null) {
+                    set = new CopyOnWriteArraySet<>();
+                }
+                set.add(this);
+                return set;
+            });
+        }
+
+        void unregister() {
+            if (!keyed) {
+                owner.unkeyed.remove(this);
+                return;
+            }
+            owner.keyed.computeIfPresent(key, (k, set) -> {
+                set.remove(this);
+                return set.isEmpty() ? null : set;
+            });
+        }
+
+        void attempt(T event) {
+            if (repeat) {
+                if (!done.get() && condition.test(event)) {
+                    action.accept(event);
+                }
+                return;
+            }
+            if (!done.get() && condition.test(event) && finish()) {
                 action.accept(event);
-                return true;
             }
-            return false;
+        }
+
+        // only one of the event, the timeout and cancelling gets to finish the wait
+        boolean finish() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            unregister();
+            TimerWheel.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean cancel() {
+            return finish();
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.get();
         }
     }
 }
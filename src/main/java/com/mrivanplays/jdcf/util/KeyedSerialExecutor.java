@@ -0,0 +1,130 @@
+package com.mrivanplays.jdcf.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Represents an executor which runs tasks of the same key one after another, in the order they were submitted, while
+ * tasks of different keys run in parallel on the underlying executor. Every key with pending tasks gets a mailbox,
+ * which is dropped as soon as it runs empty.
+ */
+public final class KeyedSerialExecutor {
+
+    // tasks a mailbox runs before giving its thread to other mailboxes
+    private static final int BATCH_SIZE = 16;
+
+    private final Supplier<? extends Executor> executor;
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Logger logger = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    /**
+     * Creates a new keyed serial executor.
+     *
+     * @param executor supplier of the executor mailboxes run on. Asked every time a mailbox gets scheduled.
+     */
+    public KeyedSerialExecutor(@NotNull Supplier<? extends Executor> executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Submits the specified task to the mailbox of the specified key.
+     *
+     * @param key  key
+     * @param task task
+     * @throws RejectedExecutionException if the underlying executor rejects the mailbox
+     */
+    public void execute(long key, @NotNull Runnable task) {
+        Objects.requireNonNull(task, "task");
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(key, Mailbox::new);
+            if (mailbox.offer(task)) {
+                return;
+            }
+            // the mailbox ran empty and got dropped while we were getting it
+        }
+    }
+
+    /**
+     * Returns the count of keys, which currently have tasks pending or running.
+     *
+     * @return active keys
+     */
+    public int getActiveKeys() {
+        return mailboxes.size();
+    }
+
+    private final class Mailbox implements Runnable {
+
+        private final long key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled = false;
+        private boolean retired = false;
+
+        Mailbox(long key) {
+            this.key = key;
+        }
+
+        boolean offer(Runnable task) {
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                tasks.add(task);
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            try {
+                executor.get().execute(this);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    tasks.clear();
+                    retire();
+                }
+                throw e;
+            }
+        }
+
+        private void retire() {
+            scheduled = false;
+            retired = true;
+            mailboxes.remove(key, this);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        retire();
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    logger.error("Error encountered while running a task of key " + key, e);
+                }
+            }
+            schedule();
+        }
+    }
+}
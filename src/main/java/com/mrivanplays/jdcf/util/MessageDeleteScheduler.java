@@ -0,0 +1,195 @@
+package com.mrivanplays.jdcf.util;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageChannel;
+import net.dv8tion.jda.api.exceptions.ErrorResponseException;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Represents a scheduler, which deletes messages after a delay. Instead of a timer and a request per message, messages
+ * are collected per channel and deleted together on a shared timer, with bulk deletes where the channel allows them.
+ * Failed deletes are logged, except for messages which are already gone.
+ */
+public final class MessageDeleteScheduler {
+
+    // how often due messages are deleted, messages are deleted up to this much later than asked
+    private static final long TICK_MILLIS = 1000;
+
+    private final Supplier<ScheduledExecutorService> executor;
+    private final LongSupplier defaultDelay;
+    private final Map<Long, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final AtomicBoolean ticking = new AtomicBoolean();
+    private final Logger logger = LoggerFactory.getLogger(MessageDeleteScheduler.class);
+
+    /**
+     * Creates a new message delete scheduler.
+     *
+     * @param executor     supplier of the executor the timer runs on
+     * @param defaultDelay supplier of the delay, in milliseconds, used by {@link #deleteLater(Message)}
+     */
+    public MessageDeleteScheduler(@NotNull Supplier<ScheduledExecutorService> executor, @NotNull LongSupplier defaultDelay) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.defaultDelay = Objects.requireNonNull(defaultDelay, "defaultDelay");
+    }
+
+    /**
+     * Deletes the specified message after the default delay. If the default delay isn't positive, the message is
+     * kept.
+     *
+     * @param message message
+     */
+    public void deleteLater(@NotNull Message message) {
+        long delay = defaultDelay.getAsLong();
+        if (delay > 0) {
+            deleteLater(message, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Deletes the specified message after the specified delay.
+     *
+     * @param message message
+     * @param delay   delay
+     * @param unit    unit of the delay
+     */
+    public void deleteLater(@NotNull Message message, long delay, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(message, "message");
+        Objects.requireNonNull(unit, "unit");
+        if (message instanceof CommandDispatcherMessage) {
+            // dispatched commands have no real message behind them
+            return;
+        }
+        if (!message.isFromGuild() && message.getAuthor().getIdLong() != message.getJDA().getSelfUser().getIdLong()) {
+            // in DMs we can delete only our own messages
+            return;
+        }
+        MessageChannel channel = message.getChannel();
+        long deleteAt = System.nanoTime() + unit.toNanos(delay);
+        while (!channels.computeIfAbsent(channel.getIdLong(), id -> new ChannelQueue(channel)).add(message.getIdLong(), deleteAt)) {
+            // the queue ran empty and got dropped while we were getting it
+        }
+        startTicking();
+    }
+
+    /**
+     * Returns the count of messages waiting to be deleted.
+     *
+     * @return pending messages
+     */
+    public int getPending() {
+        int pending = 0;
+        for (ChannelQueue queue : channels.values()) {
+            pending += queue.size();
+        }
+        return pending;
+    }
+
+    private void startTicking() {
+        if (!ticking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.get().schedule(this::tick, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, whatever is left stays undeleted
+            ticking.set(false);
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (ChannelQueue queue : channels.values()) {
+            long[] due = queue.pollDue(now);
+            if (due.length != 0) {
+                try {
+                    List<CompletableFuture<Void>> deletes = queue.channel.purgeMessagesById(due);
+                    for (CompletableFuture<Void> delete : deletes) {
+                        delete.whenComplete((ignored, error) -> {
+                            if (error != null) {
+                                onDeleteFailure(queue.channel, error);
+                            }
+                        });
+                    }
+                } catch (Throwable e) {
+                    logger.error("Error encountered while deleting messages in channel " + queue.channel.getId(), e);
+                }
+            }
+            if (queue.retireIfEmpty()) {
+                channels.remove(queue.channel.getIdLong(), queue);
+            }
+        }
+        ticking.set(false);
+        if (!channels.isEmpty()) {
+            startTicking();
+        }
+    }
+
+    private void onDeleteFailure(MessageChannel channel, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ErrorResponseException
+                && ((ErrorResponseException) cause).getErrorResponse() == ErrorResponse.UNKNOWN_MESSAGE) {
+            // deleted by someone else meanwhile
+            return;
+        }
+        logger.error("Could not delete messages in channel " + channel.getId(), cause);
+    }
+
+    private static final class ChannelQueue {
+
+        private final MessageChannel channel;
+        // ordered by the time the message should be deleted at
+        private final PriorityQueue<long[]> messages = new PriorityQueue<>((a, b) -> Long.compare(a[1] - b[1], 0));
+        private boolean retired = false;
+
+        ChannelQueue(MessageChannel channel) {
+            this.channel = channel;
+        }
+
+        synchronized boolean add(long messageId, long deleteAt) {
+            if (retired) {
+                return false;
+            }
+            messages.add(new long[]{messageId, deleteAt});
+            return true;
+        }
+
+        synchronized long[] pollDue(long now) {
+            int count = 0;
+            long[] due = new long[messages.size()];
+            while (!messages.isEmpty() && messages.peek()[1] - now <= 0) {
+                due[count++] = messages.poll()[0];
+            }
+            return count == due.length ? due : Arrays.copyOf(due, count);
+        }
+
+        synchronized int size() {
+            return messages.size();
+        }
+
+        synchronized boolean retireIfEmpty() {
+            if (messages.isEmpty()) {
+                retired = true;
+            }
+            return retired;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.mrivanplays.jdcf.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Represents a hashed timer wheel. Timers are put in the bucket of the tick they expire at, so scheduling and
+ * cancelling cost O(1) no matter how many timers there are. The wheel doesn't run by itself, {@link #advance()} should
+ * be called (at least) once per tick, which runs every timer expired up to the time of the clock.
+ */
+public final class TimerWheel {
+
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final long startedAt;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates a new timer wheel.
+     *
+     * @param tickDuration duration of a tick, the precision of the timers
+     * @param unit         unit of the tick duration
+     * @param wheelSize    count of buckets, rounded up to a power of two
+     * @param clock        clock, returning the current time in nanoseconds
+     */
+    public TimerWheel(long tickDuration, @NotNull TimeUnit unit, int wheelSize, @NotNull LongSupplier clock) {
+        Objects.requireNonNull(unit, "unit");
+        this.clock = Objects.requireNonNull(clock, "clock");
+        Utils.checkState(tickDuration > 0, "tickDuration should be positive");
+        Utils.checkState(wheelSize > 0 && wheelSize <= (1 << 30), "wheelSize should be between 1 and 2^30");
+        this.tickNanos = unit.toNanos(tickDuration);
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.buckets = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.startedAt = clock.getAsLong();
+    }
+
+    /**
+     * Schedules the specified task to run after the specified delay.
+     *
+     * @param task  task
+     * @param delay delay
+     * @param unit  unit of the delay
+     * @return timeout, which can cancel the task
+     */
+    @NotNull
+    public synchronized Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(task, "task");
+        Objects.requireNonNull(unit, "unit");
+        long elapsed = clock.getAsLong() - startedAt + unit.toNanos(Math.max(0, delay));
+        // round up, so a timer never fires early
+        long deadline = Math.max(currentTick + 1, (elapsed + tickNanos - 1) / tickNanos);
+        Timeout timeout = new Timeout(task, deadline);
+        link(timeout);
+        return timeout;
+    }
+
+    /**
+     * Runs every timer which expired up to the current time of the clock. Timers run on the calling thread.
+     *
+     * @return count of timers ran
+     * @throws RuntimeException the first exception a timer threw, after all timers ran
+     */
+    public int advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = (clock.getAsLong() - startedAt) / tickNanos;
+            if (targetTick <= currentTick) {
+                return 0;
+            }
+            // after a long pause every bucket is visited once, not once per missed tick
+            long from = Math.max(currentTick + 1, targetTick - mask);
+            for (long tick = from; tick <= targetTick; tick++) {
+                Timeout timeout = buckets[(int) (tick & mask)];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.deadline <= targetTick) {
+                        unlink(timeout);
+                        timeout.expired = true;
+                        expired.add(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+            currentTick = targetTick;
+        }
+        RuntimeException failure = null;
+        for (Timeout timeout : expired) {
+            // a failing timer shouldn't keep the rest from running
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return expired.size();
+    }
+
+    /**
+     * Returns the count of timers which are neither expired nor cancelled.
+     *
+     * @return pending timers
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = (int) (timeout.deadline & mask);
+        Timeout head = buckets[bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        buckets[bucket] = timeout;
+        timeout.linked = true;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            buckets[(int) (timeout.deadline & mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+
+    /**
+     * Represents a timer, scheduled on a {@link TimerWheel}.
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private Timeout previous;
+        private Timeout next;
+        private boolean linked;
+        private boolean expired;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timer, freeing its place in the wheel right away.
+         *
+         * @return <code>true</code> if cancelled, <code>false</code> if already expired or cancelled
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (!linked) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+
+        /**
+         * Returns whenever this timer's task was ran.
+         *
+         * @return <code>true</code> if expired, <code>false</code> otherwise
+         */
+        public boolean isExpired() {
+            synchronized (TimerWheel.this) {
+                return expired;
+            }
+        }
+    }
+}
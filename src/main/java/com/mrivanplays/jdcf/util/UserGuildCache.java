@@ -0,0 +1,128 @@
+package com.mrivanplays.jdcf.util;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Represents a bounded cache of the guild, whose prefix applies to a user's direct messages. Finding that guild means
+ * walking the bot's whole guild cache for mutual guilds, so it is done once per user, until the user or the guild
+ * joins or leaves. Users without a mutual guild are cached as well.
+ */
+public final class UserGuildCache {
+
+    private static final long NO_GUILD = 0;
+
+    private final int maxEntries;
+    private final Map<Long, Long> cache;
+
+    public UserGuildCache(int maxEntries) {
+        Utils.checkState(maxEntries > 0, "maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > UserGuildCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the id of the guild, whose prefix applies to the specified user's direct messages.
+     *
+     * @param user user
+     * @return guild id, or 0 if the user shares no guild with the bot
+     */
+    public long getGuildId(@NotNull User user) {
+        Objects.requireNonNull(user, "user");
+        long userId = user.getIdLong();
+        synchronized (cache) {
+            Long guildId = cache.get(userId);
+            if (guildId != null) {
+                return guildId;
+            }
+        }
+        List<Guild> mutualGuilds = user.getMutualGuilds();
+        long guildId = mutualGuilds.isEmpty() ? NO_GUILD : mutualGuilds.get(0).getIdLong();
+        synchronized (cache) {
+            cache.put(userId, guildId);
+        }
+        return guildId;
+    }
+
+    /**
+     * Called when the bot joins a guild. Users, which had no mutual guild, may have one now.
+     *
+     * @param guildId guild id
+     */
+    public void onGuildJoin(long guildId) {
+        removeValues(NO_GUILD);
+    }
+
+    /**
+     * Called when the bot leaves a guild. Users, which resolved to it, resolve again.
+     *
+     * @param guildId guild id
+     */
+    public void onGuildLeave(long guildId) {
+        removeValues(guildId);
+    }
+
+    /**
+     * Called when a user joins a guild.
+     *
+     * @param guildId guild id
+     * @param userId  user id
+     */
+    public void onMemberJoin(long guildId, long userId) {
+        synchronized (cache) {
+            Long cached = cache.get(userId);
+            if (cached != null && cached == NO_GUILD) {
+                cache.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Called when a user leaves a guild.
+     *
+     * @param guildId guild id
+     * @param userId  user id
+     */
+    public void onMemberLeave(long guildId, long userId) {
+        synchronized (cache) {
+            Long cached = cache.get(userId);
+            if (cached != null && cached == guildId) {
+                cache.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Returns the count of cached users.
+     *
+     * @return cache size
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void removeValues(long guildId) {
+        synchronized (cache) {
+            for (Iterator<Long> iterator = cache.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next() == guildId) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mrivanplays.jdcf.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory of executors for asynchronously executed commands. This is the Java 21 version of this class, which runs
+ * commands on virtual threads.
+ */
+public final class CommandExecutors {
+
+    private CommandExecutors() {
+    }
+
+    /**
+     * Returns whenever the running JVM supports virtual threads.
+     *
+     * @return <code>true</code> if supported, <code>false</code> otherwise
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return true;
+    }
+
+    // blocking calls inside commands then don't hold a platform thread
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("JDCF-Command-", 0).factory());
+    }
+
+    /**
+     * Creates the default command executor, which on this version runs every task on its own virtual thread.
+     *
+     * @return command executor
+     */
+    @NotNull
+    public static ExecutorService newDefaultExecutor() {
+        return newVirtualThreadPerTaskExecutor();
+    }
+}